@@ -0,0 +1,60 @@
+package octoplush;
+
+import octoplush.command.FindCommand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FindCommand#execute}, including formatting the results, which are written to a
+ * discarding stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FindBenchmark {
+    @Param({"1000", "100000"})
+    private int count;
+
+    @Param({"milk", "boo*", "dentist gym", "cake /or gift", "o b"})
+    private String query;
+
+    private TaskList tasks;
+    private Ui ui;
+    private PrintStream stdout;
+
+    @Setup
+    public void generate() {
+        tasks = new TaskList(TaskFileGenerator.generate(count, TaskFileGenerator.DEFAULT_SEED));
+        tasks.find(query); // Build the keyword index outside the measurement
+        stdout = System.out;
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+        ui = new Ui();
+    }
+
+    @TearDown
+    public void restoreOutput() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public void find() {
+        new FindCommand(query).execute(tasks, ui, null);
+        ui.flush();
+    }
+}
@@ -0,0 +1,54 @@
+package octoplush;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Ui#showTaskList(TaskList)}, writing to a discarding stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ListBenchmark {
+    @Param({"1000", "100000"})
+    private int count;
+
+    private TaskList tasks;
+    private Ui ui;
+    private PrintStream stdout;
+
+    @Setup
+    public void generate() {
+        tasks = new TaskList(TaskFileGenerator.generate(count, TaskFileGenerator.DEFAULT_SEED));
+        stdout = System.out;
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+        ui = new Ui();
+    }
+
+    @TearDown
+    public void restoreOutput() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public void list() {
+        ui.showTaskList(tasks);
+        ui.flush();
+    }
+}
@@ -0,0 +1,49 @@
+package octoplush;
+
+import octoplush.command.Command;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Parser#parse(String)} for every command type.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({
+        "list",
+        "todo read book",
+        "deadline return book /by 2025-12-25 1800",
+        "event project meeting /from 2025-12-20 1400 /to 2025-12-20 1600",
+        "mark 2",
+        "unmark #2",
+        "delete 3",
+        "find book /or cake",
+        "due 2025-12-20 /to 2025-12-25 1800",
+        "on 2025-12-20",
+        "begin",
+        "commit",
+        "rollback",
+        "bye",
+    })
+    private String input;
+
+    @Benchmark
+    public Command parse() {
+        return Parser.parse(input);
+    }
+}
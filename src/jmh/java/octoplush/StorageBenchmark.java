@@ -0,0 +1,74 @@
+package octoplush;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures {@link Storage#load()} and {@link Storage#save(TaskList)} on generated task files.
+ * Loading a binary file is lazy, so its load time does not include decoding the tasks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StorageBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int count;
+
+    @Param({"text", "binary"})
+    private String format;
+
+    private Path dir;
+    private Path file;
+    private TaskList tasks;
+    private Storage storage;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        dir = Files.createTempDirectory("octoplush-bench");
+        file = dir.resolve("tasks.txt");
+        TaskFileGenerator.write(file, count, format.equals("binary"));
+        storage = new Storage(file.toString(), false, 0);
+        tasks = storage.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        storage.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public TaskList load() {
+        return new Storage(file.toString(), false, 0).load();
+    }
+
+    @Benchmark
+    public void save() {
+        storage.save(tasks);
+    }
+}
@@ -0,0 +1,116 @@
+package octoplush;
+
+import octoplush.task.Deadline;
+import octoplush.task.Event;
+import octoplush.task.Task;
+import octoplush.task.Todo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates synthetic task lists and task files for benchmarking.
+ * The same count and seed always give the same tasks, so runs on different machines compare like with like.
+ */
+public class TaskFileGenerator {
+    static final long DEFAULT_SEED = 2113;
+    private static final String[] WORDS = {
+        "read", "book", "return", "buy", "milk", "project", "meeting", "submit", "report", "call",
+        "mum", "dentist", "gym", "lecture", "tutorial", "quiz", "exam", "revise", "notes", "email",
+        "prof", "team", "sync", "plan", "trip", "pack", "bags", "pay", "rent", "bills",
+        "clean", "room", "laundry", "cook", "dinner", "party", "birthday", "gift", "cake", "water",
+        "plants", "walk", "dog", "fix", "bike", "update", "resume", "apply", "internship", "interview",
+    };
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private TaskFileGenerator() {
+    }
+
+    /**
+     * Generates a mix of todos, deadlines and events with a third of them done.
+     *
+     * @param count The number of tasks.
+     * @param seed The seed for the random choices.
+     * @return The tasks.
+     */
+    static ArrayList<Task> generate(int count, long seed) {
+        Random random = new Random(seed);
+        ArrayList<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder desc = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+            int words = 2 + random.nextInt(4);
+            for (int w = 1; w < words; w++) {
+                desc.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            }
+
+            LocalDateTime time = START.plusMinutes(random.nextInt(365 * 24 * 4) * 15L);
+            Task task;
+            switch (random.nextInt(3)) {
+            case 0:
+                task = new Todo(desc.toString());
+                break;
+            case 1:
+                task = new Deadline(desc.toString(), time);
+                break;
+            default:
+                task = new Event(desc.toString(), time, time.plusMinutes(30 + random.nextInt(8) * 30L));
+                break;
+            }
+            if (random.nextInt(3) == 0) {
+                task.mark();
+            }
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    /**
+     * Writes a generated task file, replacing any task file, journal and backups already at the path.
+     *
+     * @param path The task file to write.
+     * @param count The number of tasks.
+     * @param isBinary Whether to write the binary format instead of the text format.
+     * @throws IOException If an existing file cannot be removed.
+     */
+    static void write(Path path, int count, boolean isBinary) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        if (Files.isDirectory(dir)) {
+            try (var files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (file.getFileName().toString().startsWith(path.getFileName().toString())) {
+                        Files.delete(file);
+                    }
+                }
+            }
+        }
+
+        Storage storage = new Storage(path.toString(), false, 0);
+        storage.save(new TaskList(generate(count, DEFAULT_SEED)));
+        if (isBinary) {
+            storage.convertToBinary();
+        }
+        storage.close();
+    }
+
+    /**
+     * Writes a generated task file.
+     *
+     * @param args The task file, the number of tasks and optionally {@code --binary}.
+     * @throws IOException If an existing file cannot be removed.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: TaskFileGenerator FILE COUNT [--binary]");
+            return;
+        }
+        int count = Integer.parseInt(args[1]);
+        boolean isBinary = args.length > 2 && args[2].equals("--binary");
+        write(Paths.get(args[0]), count, isBinary);
+        System.out.println("Wrote " + count + " tasks to " + args[0]);
+    }
+}
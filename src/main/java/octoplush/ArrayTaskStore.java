@@ -0,0 +1,95 @@
+package octoplush;
+
+import octoplush.task.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Task store that keeps every task in memory in an {@link ArrayList}.
+ */
+class ArrayTaskStore implements TaskStore {
+    private final ArrayList<Task> tasks;
+
+    /**
+     * Creates a store over the given tasks, giving any task without a higher id than the one
+     * before it a fresh id so ids increase along the list.
+     */
+    ArrayTaskStore(ArrayList<Task> tasks) {
+        this.tasks = tasks;
+        int lastId = 0;
+        for (Task task : tasks) {
+            if (task.getId() <= lastId) {
+                task.setId(lastId + 1);
+            }
+            lastId = task.getId();
+        }
+    }
+
+    @Override
+    public int size() {
+        return tasks.size();
+    }
+
+    @Override
+    public int idAt(int index) {
+        return tasks.get(index).getId();
+    }
+
+    @Override
+    public Task get(int index) {
+        return tasks.get(index);
+    }
+
+    @Override
+    public void add(Task task) {
+        tasks.add(task);
+    }
+
+    @Override
+    public void insert(int index, Task task) {
+        tasks.add(index, task);
+    }
+
+    @Override
+    public Task remove(int index) {
+        return tasks.remove(index);
+    }
+
+    @Override
+    public List<Task> removeAll(int[] indexes) {
+        ArrayList<Task> removed = new ArrayList<>(indexes.length);
+        int kept = 0;
+        int next = 0;
+        for (int i = 0; i < tasks.size(); i++) {
+            if (next < indexes.length && indexes[next] == i) {
+                removed.add(tasks.get(i));
+                next++;
+            } else {
+                tasks.set(kept++, tasks.get(i));
+            }
+        }
+        tasks.subList(kept, tasks.size()).clear();
+        return removed;
+    }
+
+    @Override
+    public void setDone(int index, boolean isDone) {
+        if (isDone) {
+            tasks.get(index).mark();
+        } else {
+            tasks.get(index).unmark();
+        }
+    }
+
+    @Override
+    public List<Task> view() {
+        return Collections.unmodifiableList(tasks);
+    }
+
+    @Override
+    public List<Task> snapshot() {
+        return Collections.unmodifiableList(new ArrayList<>(tasks));
+    }
+}
@@ -0,0 +1,484 @@
+package octoplush;
+
+import octoplush.task.Deadline;
+import octoplush.task.Event;
+import octoplush.task.Recurrence;
+import octoplush.task.Task;
+import octoplush.task.Todo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the compact binary storage format.
+ *
+ * <p>Layout (big-endian): a header of magic {@code "OCTB"}, a version byte, the journal sequence
+ * number (long), the task count (int) and the next free task id (int), followed by one record per
+ * task. A record is a type tag byte, a flags byte (bit 0 is the done flag, bit 1 marks a repeating
+ * task), the task id (int), the description as an int length followed by UTF-8 bytes, and then the
+ * times of the task as epoch-minute longs: one for a deadline, two for an event. A repeating task's
+ * record ends with its rule: the frequency as a byte and the end of the rule as an epoch-minute long,
+ * or {@link Long#MAX_VALUE} if it repeats forever.</p>
+ *
+ * <p>After the records comes a page table: a CRC32 (int) for every {@value #PAGE_SIZE}-byte page of
+ * the file up to the end of the records, then the offset of that end (int) and a CRC32 (int) of the
+ * table. Checksumming pages separately lets {@link BinaryTaskPatcher} change a record in place and
+ * only recompute the pages it touched.</p>
+ *
+ * <p>Version 2 files, which end in a single CRC32 of the whole file instead of a page table, and
+ * version 1 files, which also have no task ids and no next id, are still read.</p>
+ */
+final class BinaryTaskFormat {
+    static final int MAGIC = 0x4F435442; // "OCTB"
+    static final byte VERSION = 3;
+    private static final byte VERSION_WITH_FILE_CRC = 2;
+    private static final byte VERSION_WITHOUT_IDS = 1;
+    static final byte FLAG_DONE = 1;
+    static final byte FLAG_REPEATING = 2;
+    private static final int RULE_SIZE = 1 + 8;
+    private static final long NO_END = Long.MAX_VALUE;
+    static final int PAGE_SIZE = 64 * 1024;
+    static final int TRAILER_SIZE = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private BinaryTaskFormat() {
+    }
+
+    /**
+     * Checks whether the file at the given path starts with the binary format's magic number.
+     *
+     * @param path The file to check.
+     * @return true if the file is in the binary format.
+     * @throws IOException If the file cannot be read.
+     */
+    static boolean isBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // Keep reading until the magic number is complete or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Memory-maps a binary task file, verifies its checksums and returns the mapped buffer
+     * positioned at the first record.
+     *
+     * @param channel An open channel on the file.
+     * @return The mapped file, limited to exclude everything after the records.
+     * @throws IOException If the file cannot be mapped or is damaged.
+     */
+    static MappedByteBuffer map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Binary task file is too large to map: " + size + " bytes");
+        }
+        if (size < headerSize(VERSION_WITHOUT_IDS) + 4) {
+            throw new IOException("Binary task file is truncated");
+        }
+
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        int body;
+        if (buf.getInt(0) != MAGIC) {
+            throw new IOException("Unsupported binary task file version");
+        } else if (version(buf) == VERSION) {
+            body = verifyPages(buf, (int) size);
+        } else if (version(buf) == VERSION_WITH_FILE_CRC || version(buf) == VERSION_WITHOUT_IDS) {
+            body = (int) size - 4;
+            CRC32 crc = new CRC32();
+            crc.update(buf.duplicate().limit(body));
+            if ((int) crc.getValue() != buf.getInt(body)) {
+                throw new IOException("Binary task file failed its checksum");
+            }
+        } else {
+            throw new IOException("Unsupported binary task file version");
+        }
+
+        buf.limit(body);
+        buf.position(headerSize(version(buf)));
+        return buf;
+    }
+
+    /**
+     * Checks the page table of a mapped file and every page against it.
+     *
+     * @return The offset of the end of the records.
+     */
+    private static int verifyPages(ByteBuffer buf, int size) throws IOException {
+        if (size < headerSize(VERSION) + TRAILER_SIZE) {
+            throw new IOException("Binary task file is truncated");
+        }
+        int recordsEnd = buf.getInt(size - TRAILER_SIZE);
+        int pages = pageCount(recordsEnd);
+        if (recordsEnd < headerSize(VERSION) || (long) recordsEnd + 4L * pages + TRAILER_SIZE != size) {
+            throw new IOException("Binary task file is truncated");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.duplicate().position(recordsEnd).limit(recordsEnd + 4 * pages));
+        if ((int) crc.getValue() != buf.getInt(size - 4)) {
+            throw new IOException("Binary task file failed its checksum");
+        }
+        for (int page = 0; page < pages; page++) {
+            int start = page * PAGE_SIZE;
+            crc.reset();
+            crc.update(buf.duplicate().position(start).limit(Math.min(recordsEnd, start + PAGE_SIZE)));
+            if ((int) crc.getValue() != buf.getInt(recordsEnd + 4 * page)) {
+                throw new IOException("Binary task file failed its checksum");
+            }
+        }
+        return recordsEnd;
+    }
+
+    /**
+     * Returns the number of pages covering the given number of bytes.
+     */
+    static int pageCount(long bytes) {
+        return (int) ((bytes + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    /**
+     * Encodes the page table and trailer that follow the records.
+     *
+     * @param pageCrcs The CRC32 of each page.
+     * @param recordsEnd The offset just past the last record.
+     * @return The encoded table, ready to be written at {@code recordsEnd}.
+     */
+    static ByteBuffer encodePageTable(int[] pageCrcs, int recordsEnd) {
+        ByteBuffer table = ByteBuffer.allocate(4 * pageCrcs.length + TRAILER_SIZE);
+        for (int pageCrc : pageCrcs) {
+            table.putInt(pageCrc);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(table.array(), 0, table.position());
+        table.putInt(recordsEnd).putInt((int) crc.getValue());
+        return table.flip();
+    }
+
+    private static int headerSize(byte version) {
+        return version == VERSION_WITHOUT_IDS ? 4 + 1 + 8 + 4 : 4 + 1 + 8 + 4 + 4;
+    }
+
+    /**
+     * Reads the format version from a mapped file's header.
+     */
+    static byte version(ByteBuffer buf) {
+        return buf.get(4);
+    }
+
+    /**
+     * Checks whether the records of a mapped file carry task ids.
+     */
+    static boolean hasIds(ByteBuffer buf) {
+        return version(buf) != VERSION_WITHOUT_IDS;
+    }
+
+    /**
+     * Reads the next free task id from a mapped file's header, or 0 if the file does not store one.
+     */
+    static int nextId(ByteBuffer buf) {
+        return hasIds(buf) ? buf.getInt(17) : 0;
+    }
+
+    /**
+     * Reads the journal sequence number from a mapped file's header.
+     */
+    static long seq(ByteBuffer buf) {
+        return buf.getLong(5);
+    }
+
+    /**
+     * Reads the task count from a mapped file's header.
+     */
+    static int count(ByteBuffer buf) {
+        return buf.getInt(13);
+    }
+
+    /**
+     * Returns the number of bytes of times and rule stored after the description of a record.
+     *
+     * @param tag The task type tag.
+     * @param flags The record's flags.
+     * @return The size of the times and rule in bytes.
+     */
+    static int tailSize(byte tag, byte flags) {
+        int rule = (flags & FLAG_REPEATING) != 0 ? RULE_SIZE : 0;
+        switch (tag) {
+        case 'D':
+            return 8 + rule;
+        case 'E':
+            return 16 + rule;
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the flags byte of a task's record.
+     */
+    static byte flags(Task task) {
+        int flags = task.isDone() ? FLAG_DONE : 0;
+        if (recurrenceOf(task) != null) {
+            flags |= FLAG_REPEATING;
+        }
+        return (byte) flags;
+    }
+
+    private static Recurrence recurrenceOf(Task task) {
+        if (task instanceof Deadline d) {
+            return d.getRecurrence();
+        }
+        return task instanceof Event e ? e.getRecurrence() : null;
+    }
+
+    /**
+     * Decodes the record at the given offset of a mapped file.
+     * Only absolute reads are used on the shared buffer, so records can be decoded concurrently.
+     *
+     * @param file The mapped file.
+     * @param offset The offset of the record's tag byte.
+     * @return The decoded task, with its id set if the file stores ids.
+     * @throws IOException If the record is damaged.
+     */
+    static Task readRecord(ByteBuffer file, int offset) throws IOException {
+        ByteBuffer buf = file.duplicate().position(offset);
+        byte tag = buf.get();
+        byte flags = buf.get();
+        int id = hasIds(file) ? buf.getInt() : 0;
+        int len = buf.getInt();
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        Task task = readTask(buf, tag, flags, new String(bytes, StandardCharsets.UTF_8));
+        task.setId(id);
+        return task;
+    }
+
+    /**
+     * Decodes only the description of the record at the given offset of a mapped file.
+     *
+     * @param file The mapped file.
+     * @param offset The offset of the record's tag byte.
+     * @return The description.
+     */
+    static String readDescription(ByteBuffer file, int offset) {
+        ByteBuffer buf = file.duplicate().position(offset + 2 + (hasIds(file) ? 4 : 0));
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads only the time of the record at the given offset of a mapped file, as returned by
+     * {@link TaskStore#timeAt(int)}.
+     *
+     * @param file The mapped file.
+     * @param offset The offset of the record's tag byte.
+     * @return The due time of a deadline or the start of an event as an epoch minute, or
+     *     {@link TaskStore#NO_TIME} for a todo or a task that is done.
+     */
+    static long readTime(ByteBuffer file, int offset) {
+        byte tag = file.get(offset);
+        if (tag == 'T' || (file.get(offset + 1) & FLAG_DONE) != 0) {
+            return TaskStore.NO_TIME;
+        }
+        int lengthOffset = offset + 2 + (hasIds(file) ? 4 : 0);
+        return file.getLong(lengthOffset + 4 + file.getInt(lengthOffset));
+    }
+
+    /**
+     * Checks whether the record at the given offset of a mapped file has a repeat rule.
+     *
+     * @param file The mapped file.
+     * @param offset The offset of the record's tag byte.
+     * @return true if the task repeats.
+     */
+    static boolean isRepeating(ByteBuffer file, int offset) {
+        return (file.get(offset + 1) & FLAG_REPEATING) != 0;
+    }
+
+    /**
+     * Builds the task for a record whose tag, flags and description have already been read,
+     * consuming its times and rule from the buffer.
+     */
+    static Task readTask(ByteBuffer buf, byte tag, byte flags, String desc) throws IOException {
+        Task task;
+        switch (tag) {
+        case 'T':
+            task = new Todo(desc);
+            break;
+        case 'D':
+            LocalDateTime by = fromEpochMinute(buf.getLong());
+            task = new Deadline(desc, by, readRule(buf, flags));
+            break;
+        case 'E':
+            LocalDateTime from = fromEpochMinute(buf.getLong());
+            LocalDateTime to = fromEpochMinute(buf.getLong());
+            task = new Event(desc, from, to, readRule(buf, flags));
+            break;
+        default:
+            throw new IOException("Unknown task type in binary task file: " + tag);
+        }
+
+        if ((flags & FLAG_DONE) != 0) {
+            task.mark();
+        }
+        return task;
+    }
+
+    private static Recurrence readRule(ByteBuffer buf, byte flags) throws IOException {
+        if ((flags & FLAG_REPEATING) == 0) {
+            return null;
+        }
+        Recurrence.Frequency[] frequencies = Recurrence.Frequency.values();
+        int frequency = buf.get();
+        if (frequency < 0 || frequency >= frequencies.length) {
+            throw new IOException("Unknown repeat frequency in binary task file: " + frequency);
+        }
+        long until = buf.getLong();
+        return new Recurrence(frequencies[frequency], until == NO_END ? null : fromEpochMinute(until));
+    }
+
+    /**
+     * Writes all tasks to the given channel in the binary format.
+     *
+     * @param channel The channel to write to, positioned at the start of an empty file.
+     * @param tasks The tasks to write.
+     * @param count The number of tasks.
+     * @param seq The journal sequence number the tasks reflect.
+     * @param nextId The next free task id.
+     * @return Where each task's record was written.
+     * @throws IOException If writing fails or the file would be too large to map.
+     */
+    static RecordLayout write(FileChannel channel, Iterable<Task> tasks, int count, long seq, int nextId)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        PageChecksums pages = new PageChecksums();
+        int[] ids = new int[count];
+        int[] offsets = new int[count];
+        long written = 0;
+        int n = 0;
+
+        buf.putInt(MAGIC).put(VERSION).putLong(seq).putInt(count).putInt(nextId);
+        for (Task task : tasks) {
+            byte[] desc = task.getDescription().getBytes(StandardCharsets.UTF_8);
+            int recordSize = recordSize(desc);
+            if (buf.remaining() < recordSize) {
+                written += drain(channel, buf, pages);
+            }
+            if (buf.remaining() < recordSize) {
+                buf = ByteBuffer.allocateDirect(Math.max(recordSize, 2 * buf.capacity())); // Oversized description
+            }
+            if (written + buf.position() + recordSize > Integer.MAX_VALUE) {
+                throw new IOException("Too many tasks to store in a binary task file");
+            }
+
+            ids[n] = task.getId();
+            offsets[n] = (int) written + buf.position();
+            n++;
+            putRecord(buf, task, desc);
+        }
+        written += drain(channel, buf, pages);
+
+        ByteBuffer table = encodePageTable(pages.finish(), (int) written);
+        while (table.hasRemaining()) {
+            channel.write(table);
+        }
+        return new RecordLayout(ids, offsets, n, (int) written);
+    }
+
+    /**
+     * Returns the largest number of bytes a task's record can take with the given description.
+     */
+    static int recordSize(byte[] desc) {
+        return 2 + 4 + 4 + desc.length + 16 + RULE_SIZE;
+    }
+
+    /**
+     * Encodes a task's record into the buffer, which must have {@link #recordSize(byte[])} bytes left.
+     *
+     * @param buf The buffer to write to.
+     * @param task The task.
+     * @param desc The task's description as UTF-8.
+     */
+    static void putRecord(ByteBuffer buf, Task task, byte[] desc) {
+        buf.put((byte) task.tag()).put(flags(task)).putInt(task.getId())
+                .putInt(desc.length).put(desc);
+        if (task instanceof Deadline d) {
+            buf.putLong(toEpochMinute(d.getBy()));
+        } else if (task instanceof Event e) {
+            buf.putLong(toEpochMinute(e.getFrom())).putLong(toEpochMinute(e.getTo()));
+        }
+        Recurrence recurrence = recurrenceOf(task);
+        if (recurrence != null) {
+            LocalDateTime until = recurrence.getUntil();
+            buf.put((byte) recurrence.getFrequency().ordinal()).putLong(until == null ? NO_END : toEpochMinute(until));
+        }
+    }
+
+    private static int drain(FileChannel channel, ByteBuffer buf, PageChecksums pages) throws IOException {
+        buf.flip();
+        int length = buf.remaining();
+        pages.update(buf.duplicate());
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+        return length;
+    }
+
+    /**
+     * Computes the CRC32 of each page of a file as its bytes are written in order.
+     */
+    private static final class PageChecksums {
+        private final CRC32 crc = new CRC32();
+        private int[] values = new int[16];
+        private int pages;
+        private int filled;
+
+        void update(ByteBuffer bytes) {
+            while (bytes.hasRemaining()) {
+                int length = Math.min(bytes.remaining(), PAGE_SIZE - filled);
+                crc.update(bytes.duplicate().limit(bytes.position() + length));
+                bytes.position(bytes.position() + length);
+                filled += length;
+                if (filled == PAGE_SIZE) {
+                    endPage();
+                }
+            }
+        }
+
+        int[] finish() {
+            if (filled > 0) {
+                endPage();
+            }
+            return Arrays.copyOf(values, pages);
+        }
+
+        private void endPage() {
+            if (pages == values.length) {
+                values = Arrays.copyOf(values, pages * 2);
+            }
+            values[pages++] = (int) crc.getValue();
+            crc.reset();
+            filled = 0;
+        }
+    }
+
+    static long toEpochMinute(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    static LocalDateTime fromEpochMinute(long epochMinute) {
+        return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+    }
+}
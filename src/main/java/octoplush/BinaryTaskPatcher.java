@@ -0,0 +1,264 @@
+package octoplush;
+
+import octoplush.task.Task;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * Brings a binary task file up to date by rewriting only the pages that changed, instead of writing
+ * a whole new file. Marking or unmarking a task flips one flag byte in its record, and added tasks
+ * are appended after the last record; the header and the page table are then rewritten for the new
+ * count and checksums.
+ *
+ * <p>Before touching the file, the original bytes of every page about to change are written to an
+ * undo file and forced to disk. If the process dies while patching, {@link #recover(Path, Path)}
+ * puts those bytes back on the next load, so the file always ends up as either the old or the new
+ * snapshot.</p>
+ */
+final class BinaryTaskPatcher {
+    private static final int UNDO_MAGIC = 0x4F435455; // "OCTU"
+    private static final int HEADER_FIELDS_OFFSET = 5;
+    private static final int MIN_PAGES_TO_REFUSE = 4;
+    private static final int MAX_PAGE_SHARE = 4;
+
+    private BinaryTaskPatcher() {
+    }
+
+    /**
+     * Patches a binary task file written with the given layout so it holds the given tasks.
+     * Patching only applies when no task was deleted since the file was written, so the tasks in
+     * the file are still the first tasks of the list in the same order.
+     *
+     * @param path The binary task file.
+     * @param undoPath Where to keep the original bytes while patching.
+     * @param layout Where each record sits in the file.
+     * @param tasks All tasks, in list order.
+     * @param changedIds The ids of tasks in the file that were marked or unmarked since it was written.
+     * @param seq The journal sequence number the tasks reflect.
+     * @param nextId The next free task id.
+     * @return The layout of the patched file, or null if the file no longer matches the layout or so
+     *     much of it changed that writing a new file is cheaper; the file is untouched in that case.
+     * @throws IOException If patching fails part way; the undo file is then left for {@link #recover}.
+     */
+    static RecordLayout patch(Path path, Path undoPath, RecordLayout layout, List<Task> tasks, int[] changedIds,
+            long seq, int nextId) throws IOException {
+        int count = layout.count();
+        if (tasks.size() < count || (count > 0 && tasks.get(count - 1).getId() != layout.idAt(count - 1))
+                || isLinked(path)) {
+            return null;
+        }
+
+        RecordLayout patched;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int oldEnd = layout.recordsEnd();
+            int oldPages = BinaryTaskFormat.pageCount(oldEnd);
+            long oldSize = channel.size();
+            if (oldSize != oldEnd + 4L * oldPages + BinaryTaskFormat.TRAILER_SIZE
+                    || readInt(channel, oldSize - BinaryTaskFormat.TRAILER_SIZE) != oldEnd) {
+                return null;
+            }
+
+            TreeSet<Integer> touched = new TreeSet<>();
+            touched.add(0); // The header
+            int[] flagOffsets = new int[changedIds.length];
+            for (int i = 0; i < changedIds.length; i++) {
+                int index = layout.indexOf(changedIds[i]);
+                flagOffsets[i] = index < 0 ? -1 : layout.offsetAt(index) + 1;
+                if (index >= 0) {
+                    touched.add(flagOffsets[i] / BinaryTaskFormat.PAGE_SIZE);
+                }
+            }
+            if (oldPages > MIN_PAGES_TO_REFUSE && touched.size() > oldPages / MAX_PAGE_SHARE) {
+                return null;
+            }
+
+            int[] newIds = new int[tasks.size() - count];
+            int[] newOffsets = new int[newIds.length];
+            ByteBuffer appended = encodeRecords(tasks, count, oldEnd, newIds, newOffsets);
+            int newEnd = oldEnd + appended.remaining();
+
+            ByteBuffer oldTable = ByteBuffer.allocate(4 * oldPages);
+            readFully(channel, oldTable, oldEnd);
+            writeUndo(channel, undoPath, touched, oldEnd, oldSize);
+
+            ByteBuffer header = ByteBuffer.allocate(16).putLong(seq).putInt(tasks.size()).putInt(nextId).flip();
+            writeFully(channel, header, HEADER_FIELDS_OFFSET);
+            for (int i = 0; i < changedIds.length; i++) {
+                if (flagOffsets[i] >= 0) {
+                    Task task = tasks.get(layout.indexOf(changedIds[i]));
+                    ByteBuffer flags = ByteBuffer.allocate(1).put(0, BinaryTaskFormat.flags(task));
+                    writeFully(channel, flags, flagOffsets[i]);
+                }
+            }
+            writeFully(channel, appended, oldEnd);
+
+            int newPages = BinaryTaskFormat.pageCount(newEnd);
+            int[] pageCrcs = new int[newPages];
+            for (int page = 0; page < newPages; page++) {
+                boolean isChanged = page >= oldPages - 1 || touched.contains(page);
+                pageCrcs[page] = isChanged ? checksumPage(channel, page, newEnd) : oldTable.getInt(4 * page);
+            }
+            ByteBuffer table = BinaryTaskFormat.encodePageTable(pageCrcs, newEnd);
+            long newSize = newEnd + (long) table.remaining();
+            writeFully(channel, table, newEnd);
+            channel.truncate(newSize);
+            channel.force(true);
+            patched = layout.append(newIds, newOffsets, newEnd);
+        }
+        Files.delete(undoPath);
+        return patched;
+    }
+
+    /**
+     * Finishes an interrupted patch by restoring the bytes saved in the undo file. An undo file that
+     * was not completely written means patching never started, so it is simply deleted.
+     *
+     * @param path The binary task file.
+     * @param undoPath The undo file.
+     * @return true if the file was restored.
+     * @throws IOException If the file cannot be restored.
+     */
+    static boolean recover(Path path, Path undoPath) throws IOException {
+        if (!Files.exists(undoPath)) {
+            return false;
+        }
+        ByteBuffer undo = ByteBuffer.wrap(Files.readAllBytes(undoPath));
+        if (!isComplete(undo) || !Files.exists(path)) {
+            Files.delete(undoPath);
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            undo.position(4);
+            long oldSize = undo.getLong();
+            while (undo.remaining() > 4) {
+                long position = undo.getLong();
+                int length = undo.getInt();
+                writeFully(channel, undo.slice(undo.position(), length), position);
+                undo.position(undo.position() + length);
+            }
+            channel.truncate(oldSize);
+            channel.force(true);
+        }
+        Files.delete(undoPath);
+        return true;
+    }
+
+    /**
+     * Saves the original bytes of the touched pages and of everything after the records, which the
+     * appended records and the new page table overwrite, then forces them to disk.
+     */
+    private static void writeUndo(FileChannel channel, Path undoPath, TreeSet<Integer> touched, int oldEnd,
+            long oldSize) throws IOException {
+        int tailLength = (int) (oldSize - oldEnd);
+        ByteBuffer undo = ByteBuffer.allocate(4 + 8 + touched.size() * (12 + BinaryTaskFormat.PAGE_SIZE)
+                + 12 + tailLength + 4);
+        undo.putInt(UNDO_MAGIC).putLong(oldSize);
+        for (int page : touched) {
+            int start = page * BinaryTaskFormat.PAGE_SIZE;
+            int length = Math.min(BinaryTaskFormat.PAGE_SIZE, oldEnd - start);
+            undo.putLong(start).putInt(length);
+            readFully(channel, undo.slice(undo.position(), length), start);
+            undo.position(undo.position() + length);
+        }
+        undo.putLong(oldEnd).putInt(tailLength);
+        readFully(channel, undo.slice(undo.position(), tailLength), oldEnd);
+        undo.position(undo.position() + tailLength);
+        CRC32 crc = new CRC32();
+        crc.update(undo.array(), 0, undo.position());
+        undo.putInt((int) crc.getValue()).flip();
+
+        try (FileChannel out = FileChannel.open(undoPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(out, undo, 0);
+            out.force(true);
+        }
+        Storage.syncDirectory(undoPath.toAbsolutePath().getParent());
+    }
+
+    private static boolean isComplete(ByteBuffer undo) {
+        int length = undo.limit();
+        if (length < 4 + 8 + 4 || undo.getInt(0) != UNDO_MAGIC) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(undo.array(), 0, length - 4);
+        return (int) crc.getValue() == undo.getInt(length - 4);
+    }
+
+    /**
+     * Encodes the records of the tasks from the given index on, which are appended after the old records,
+     * and fills in the id and file offset of each.
+     */
+    private static ByteBuffer encodeRecords(List<Task> tasks, int from, int oldEnd, int[] ids, int[] offsets)
+            throws IOException {
+        long size = 0;
+        byte[][] descs = new byte[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            descs[i] = tasks.get(from + i).getDescription().getBytes(StandardCharsets.UTF_8);
+            size += BinaryTaskFormat.recordSize(descs[i]);
+        }
+        if (oldEnd + size > Integer.MAX_VALUE / 2) {
+            throw new IOException("Too many tasks to append to a binary task file");
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) size);
+        for (int i = 0; i < ids.length; i++) {
+            Task task = tasks.get(from + i);
+            ids[i] = task.getId();
+            offsets[i] = oldEnd + buf.position();
+            BinaryTaskFormat.putRecord(buf, task, descs[i]);
+        }
+        return buf.flip();
+    }
+
+    private static int checksumPage(FileChannel channel, int page, int recordsEnd) throws IOException {
+        int start = page * BinaryTaskFormat.PAGE_SIZE;
+        ByteBuffer bytes = ByteBuffer.allocate(Math.min(BinaryTaskFormat.PAGE_SIZE, recordsEnd - start));
+        readFully(channel, bytes, start);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.flip());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Checks whether the file is hard-linked elsewhere, as a fresh backup is, so patching it would
+     * change the backup too.
+     */
+    private static boolean isLinked(Path path) throws IOException {
+        try {
+            return (Integer) Files.getAttribute(path, "unix:nlink") > 1;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return false; // No hard links to worry about
+        }
+    }
+
+    private static int readInt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        readFully(channel, buf, position);
+        return buf.getInt(0);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Binary task file is truncated");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        long start = position - buf.position();
+        while (buf.hasRemaining()) {
+            channel.write(buf, start + buf.position());
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package octoplush;
+
+import octoplush.task.Deadline;
+import octoplush.task.Event;
+import octoplush.task.Recurrence;
+import octoplush.task.Task;
+import octoplush.task.Todo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Task store for very large lists that keeps each field of the tasks in its own primitive column
+ * instead of keeping a {@link Task} object per task: type tags in a byte array, done flags in a
+ * bitset, ids in an int array, times as epoch minutes in long arrays, and descriptions as UTF-8 in a
+ * shared byte arena. The few tasks that repeat keep their rules in a map by id rather than in columns
+ * every task would pay for. {@link #get(int)} builds a new task from the columns on each call, so changes
+ * must go through the store, as {@link TaskList} does.
+ *
+ * <p>Bytes in the arena are never overwritten, only left behind when a task is removed, so copies
+ * made by {@link #snapshot()} can share it. It is compacted into a new array once more than half of
+ * it is unused.</p>
+ */
+class ColumnarTaskStore implements TaskStore {
+    private static final int MIN_COMPACT_SIZE = 1 << 20;
+
+    private int size;
+    private byte[] tags;
+    private long[] done;
+    private int[] ids;
+    private long[] starts; // Due time of a deadline, start time of an event
+    private long[] ends; // End time of an event
+    private HashMap<Integer, Recurrence> recurrences = new HashMap<>();
+    private int[] descOffsets;
+    private int[] descLengths;
+    private byte[] arena;
+    private int arenaSize;
+    private int arenaGarbage;
+
+    /**
+     * Creates an empty store with room for the given number of tasks.
+     */
+    ColumnarTaskStore(int capacity) {
+        capacity = Math.max(capacity, 16);
+        tags = new byte[capacity];
+        done = new long[(capacity + 63) >>> 6];
+        ids = new int[capacity];
+        starts = new long[capacity];
+        ends = new long[capacity];
+        descOffsets = new int[capacity];
+        descLengths = new int[capacity];
+        arena = new byte[capacity * 16];
+    }
+
+    /**
+     * Creates a store holding the given tasks, giving any task without a higher id than the one
+     * before it a fresh id so ids increase along the store.
+     */
+    ColumnarTaskStore(List<Task> tasks) {
+        this(tasks.size());
+        for (Task task : tasks) {
+            add(task);
+        }
+    }
+
+    /**
+     * Copies the columns of another store, sharing its arena.
+     */
+    private ColumnarTaskStore(ColumnarTaskStore other) {
+        size = other.size;
+        tags = Arrays.copyOf(other.tags, size);
+        done = Arrays.copyOf(other.done, (size + 63) >>> 6);
+        ids = Arrays.copyOf(other.ids, size);
+        starts = Arrays.copyOf(other.starts, size);
+        ends = Arrays.copyOf(other.ends, size);
+        recurrences = new HashMap<>(other.recurrences);
+        descOffsets = Arrays.copyOf(other.descOffsets, size);
+        descLengths = Arrays.copyOf(other.descLengths, size);
+        arena = other.arena;
+        arenaSize = other.arenaSize;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    @Override
+    public String descriptionAt(int index) {
+        return new String(arena, descOffsets[index], descLengths[index], StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public long timeAt(int index) {
+        return tags[index] == 'T' || isDone(index) ? NO_TIME : starts[index];
+    }
+
+    @Override
+    public boolean isRepeatingAt(int index) {
+        return !recurrences.isEmpty() && recurrences.containsKey(ids[index]);
+    }
+
+    @Override
+    public Task get(int index) {
+        String desc = descriptionAt(index);
+        Task task;
+        switch (tags[index]) {
+        case 'D':
+            task = new Deadline(desc, BinaryTaskFormat.fromEpochMinute(starts[index]), recurrences.get(ids[index]));
+            break;
+        case 'E':
+            task = new Event(desc, BinaryTaskFormat.fromEpochMinute(starts[index]),
+                    BinaryTaskFormat.fromEpochMinute(ends[index]), recurrences.get(ids[index]));
+            break;
+        default:
+            task = new Todo(desc);
+            break;
+        }
+        if (isDone(index)) {
+            task.mark();
+        }
+        task.setId(ids[index]);
+        return task;
+    }
+
+    /**
+     * Appends a task, giving it a fresh id if its id is not higher than that of the last task.
+     */
+    @Override
+    public void add(Task task) {
+        int lastId = size == 0 ? 0 : ids[size - 1];
+        if (task.getId() <= lastId) {
+            task.setId(lastId + 1);
+        }
+        insert(size, task);
+    }
+
+    @Override
+    public void insert(int index, Task task) {
+        ensureCapacity(size + 1);
+        int moved = size - index;
+        System.arraycopy(tags, index, tags, index + 1, moved);
+        System.arraycopy(ids, index, ids, index + 1, moved);
+        System.arraycopy(starts, index, starts, index + 1, moved);
+        System.arraycopy(ends, index, ends, index + 1, moved);
+        System.arraycopy(descOffsets, index, descOffsets, index + 1, moved);
+        System.arraycopy(descLengths, index, descLengths, index + 1, moved);
+        insertBit(index, task.isDone());
+        size++;
+
+        tags[index] = (byte) task.tag();
+        ids[index] = task.getId();
+        if (task instanceof Deadline d) {
+            starts[index] = BinaryTaskFormat.toEpochMinute(d.getBy());
+            addRecurrence(task.getId(), d.getRecurrence());
+        } else if (task instanceof Event e) {
+            starts[index] = BinaryTaskFormat.toEpochMinute(e.getFrom());
+            ends[index] = BinaryTaskFormat.toEpochMinute(e.getTo());
+            addRecurrence(task.getId(), e.getRecurrence());
+        }
+        byte[] desc = task.getDescription().getBytes(StandardCharsets.UTF_8);
+        if (arenaSize + desc.length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + desc.length));
+        }
+        System.arraycopy(desc, 0, arena, arenaSize, desc.length);
+        descOffsets[index] = arenaSize;
+        descLengths[index] = desc.length;
+        arenaSize += desc.length;
+    }
+
+    @Override
+    public Task remove(int index) {
+        Task task = get(index);
+        recurrences.remove(ids[index]);
+        arenaGarbage += descLengths[index];
+        int moved = size - index - 1;
+        System.arraycopy(tags, index + 1, tags, index, moved);
+        System.arraycopy(ids, index + 1, ids, index, moved);
+        System.arraycopy(starts, index + 1, starts, index, moved);
+        System.arraycopy(ends, index + 1, ends, index, moved);
+        System.arraycopy(descOffsets, index + 1, descOffsets, index, moved);
+        System.arraycopy(descLengths, index + 1, descLengths, index, moved);
+        removeBit(index);
+        size--;
+
+        if (arenaSize >= MIN_COMPACT_SIZE && arenaGarbage > arenaSize / 2) {
+            compactArena();
+        }
+        return task;
+    }
+
+    @Override
+    public List<Task> removeAll(int[] indexes) {
+        ArrayList<Task> removed = new ArrayList<>(indexes.length);
+        int kept = 0;
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            if (next < indexes.length && indexes[next] == i) {
+                removed.add(get(i));
+                recurrences.remove(ids[i]);
+                arenaGarbage += descLengths[i];
+                next++;
+                continue;
+            }
+            boolean isDone = isDone(i); // Flags before i were already moved, so this one is still in place
+            tags[kept] = tags[i];
+            ids[kept] = ids[i];
+            starts[kept] = starts[i];
+            ends[kept] = ends[i];
+            descOffsets[kept] = descOffsets[i];
+            descLengths[kept] = descLengths[i];
+            setDone(kept, isDone);
+            kept++;
+        }
+        for (int i = kept; i < size; i++) {
+            setDone(i, false);
+        }
+        size = kept;
+
+        if (arenaSize >= MIN_COMPACT_SIZE && arenaGarbage > arenaSize / 2) {
+            compactArena();
+        }
+        return removed;
+    }
+
+    @Override
+    public void setDone(int index, boolean isDone) {
+        if (isDone) {
+            done[index >>> 6] |= 1L << index;
+        } else {
+            done[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    private void addRecurrence(int id, Recurrence recurrence) {
+        if (recurrence != null) {
+            recurrences.put(id, recurrence);
+        }
+    }
+
+    private boolean isDone(int index) {
+        return (done[index >>> 6] & (1L << index)) != 0;
+    }
+
+    @Override
+    public List<Task> view() {
+        return new AbstractList<>() {
+            @Override
+            public Task get(int index) {
+                return ColumnarTaskStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns a view over a copy of the columns. Copying primitive columns is much cheaper than
+     * copying tasks, and the arena is shared because its bytes are never overwritten.
+     */
+    @Override
+    public List<Task> snapshot() {
+        return new ColumnarTaskStore(this).view();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > tags.length) {
+            int newCapacity = Math.max(capacity, tags.length * 2);
+            tags = Arrays.copyOf(tags, newCapacity);
+            ids = Arrays.copyOf(ids, newCapacity);
+            starts = Arrays.copyOf(starts, newCapacity);
+            ends = Arrays.copyOf(ends, newCapacity);
+            descOffsets = Arrays.copyOf(descOffsets, newCapacity);
+            descLengths = Arrays.copyOf(descLengths, newCapacity);
+        }
+        if (capacity > done.length << 6) {
+            done = Arrays.copyOf(done, Math.max((capacity + 63) >>> 6, done.length * 2));
+        }
+    }
+
+    /**
+     * Shifts the done flags from the index on up by one and sets the flag at the index.
+     * Whole words are shifted at a time.
+     */
+    private void insertBit(int index, boolean isDone) {
+        int word = index >>> 6;
+        for (int w = (size >>> 6); w > word; w--) {
+            done[w] = (done[w] << 1) | (done[w - 1] >>> 63);
+        }
+        long lowMask = (1L << index) - 1;
+        long bits = done[word];
+        done[word] = (bits & lowMask) | ((bits & ~lowMask) << 1);
+        setDone(index, isDone);
+    }
+
+    /**
+     * Shifts the done flags after the index down by one, dropping the flag at the index.
+     */
+    private void removeBit(int index) {
+        int word = index >>> 6;
+        int lastWord = (size - 1) >>> 6;
+        long lowMask = (1L << index) - 1;
+        long bits = done[word];
+        done[word] = (bits & lowMask) | ((bits >>> 1) & ~lowMask);
+        for (int w = word; w < lastWord; w++) {
+            done[w] |= done[w + 1] << 63;
+            done[w + 1] >>>= 1;
+        }
+        done[lastWord] &= ~(1L << (size - 1)); // Clear the flag that moved out of the last slot
+    }
+
+    private void compactArena() {
+        byte[] compacted = new byte[Math.max(16, (arenaSize - arenaGarbage) * 2)];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(arena, descOffsets[i], compacted, n, descLengths[i]);
+            descOffsets[i] = n;
+            n += descLengths[i];
+        }
+        arena = compacted;
+        arenaSize = n;
+        arenaGarbage = 0;
+    }
+}
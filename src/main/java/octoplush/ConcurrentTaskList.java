@@ -0,0 +1,304 @@
+package octoplush;
+
+import octoplush.task.Deadline;
+import octoplush.task.Event;
+import octoplush.task.Task;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Task list that can be shared by sessions on several threads.
+ *
+ * <p>Changes are made by one thread at a time, under a write lock. After each change a read-only snapshot
+ * of the list is published, and every read ({@code list}, {@code find}, {@code due}, saving) works on the
+ * latest snapshot without taking the lock, so readers never wait for writers. Searches scan the snapshot
+ * instead of keeping keyword and time indexes up to date.</p>
+ *
+ * <p>Publishing copies the store's slots, so each change costs time in proportion to the size of the list.
+ * This suits many readers and occasional writers; bulk changes are cheaper on a plain {@link TaskList}
+ * that is then handed over with {@link #ConcurrentTaskList(TaskList)}.</p>
+ */
+public class ConcurrentTaskList extends TaskList {
+    private static final Comparator<Task> BY_TIME = Comparator.comparing(ConcurrentTaskList::timeOf)
+            .thenComparing(task -> task instanceof Event);
+
+    private final Object writeLock = new Object();
+    private volatile List<Task> published;
+
+    /**
+     * Creates an empty task list.
+     */
+    public ConcurrentTaskList() {
+        this(new ArrayList<>());
+    }
+
+    /**
+     * Creates a task list initialized with the given tasks.
+     *
+     * @param tasks The initial list of tasks.
+     */
+    public ConcurrentTaskList(ArrayList<Task> tasks) {
+        super(tasks);
+        published = store().snapshot();
+    }
+
+    /**
+     * Creates a task list that takes over the tasks of another, such as one returned by
+     * {@link Storage#load()}. The other list must not be used afterwards.
+     *
+     * @param loaded The list to take the tasks from.
+     */
+    public ConcurrentTaskList(TaskList loaded) {
+        super(loaded.store(), loaded.nextId());
+        published = store().snapshot();
+    }
+
+    private void publish() {
+        published = store().snapshot();
+    }
+
+    @Override
+    public void add(Task task) {
+        synchronized (writeLock) {
+            super.add(task);
+            publish();
+        }
+    }
+
+    @Override
+    public Task delete(int index) {
+        synchronized (writeLock) {
+            Task task = super.delete(index);
+            publish();
+            return task;
+        }
+    }
+
+    @Override
+    public List<Task> deleteAll(int[] indexes) {
+        synchronized (writeLock) {
+            List<Task> removed = super.deleteAll(indexes);
+            publish();
+            return removed;
+        }
+    }
+
+    @Override
+    public List<Task> archiveAll(int[] indexes) {
+        synchronized (writeLock) {
+            List<Task> removed = super.archiveAll(indexes);
+            publish();
+            return removed;
+        }
+    }
+
+    @Override
+    public int[] setDoneAll(int[] indexes, boolean isDone) {
+        synchronized (writeLock) {
+            int[] changed = super.setDoneAll(indexes, isDone);
+            publish();
+            return changed;
+        }
+    }
+
+    @Override
+    public void markTask(int index) {
+        synchronized (writeLock) {
+            super.markTask(index);
+            publish();
+        }
+    }
+
+    @Override
+    public void unmarkTask(int index) {
+        synchronized (writeLock) {
+            super.unmarkTask(index);
+            publish();
+        }
+    }
+
+    @Override
+    public void beginBatch() {
+        synchronized (writeLock) {
+            super.beginBatch();
+        }
+    }
+
+    @Override
+    public void endBatch() {
+        synchronized (writeLock) {
+            super.endBatch();
+        }
+    }
+
+    @Override
+    public void rollbackBatch() {
+        synchronized (writeLock) {
+            super.rollbackBatch();
+            publish();
+        }
+    }
+
+    @Override
+    public List<TaskChange> undo() {
+        synchronized (writeLock) {
+            List<TaskChange> changes = super.undo();
+            publish();
+            return changes;
+        }
+    }
+
+    @Override
+    public List<TaskChange> redo() {
+        synchronized (writeLock) {
+            List<TaskChange> changes = super.redo();
+            publish();
+            return changes;
+        }
+    }
+
+    @Override
+    public void checkpoint() {
+        synchronized (writeLock) {
+            super.checkpoint();
+        }
+    }
+
+    @Override
+    public boolean isInBatch() {
+        synchronized (writeLock) {
+            return super.isInBatch();
+        }
+    }
+
+    @Override
+    public Task get(int index) {
+        List<Task> all = published;
+        checkIndex(index, all);
+        return all.get(index);
+    }
+
+    @Override
+    public int size() {
+        return published.size();
+    }
+
+    /**
+     * Gets the latest published snapshot of the tasks, which later changes do not affect.
+     *
+     * @return The snapshot.
+     */
+    @Override
+    public List<Task> getTasks() {
+        return published;
+    }
+
+    @Override
+    List<Task> snapshot() {
+        return published;
+    }
+
+    @Override
+    public List<Task> find(String query) {
+        ArrayList<Task> found = new ArrayList<>();
+        for (NumberedTask match : query(new TaskQuery().containing(query))) {
+            found.add(match.getTask());
+        }
+        return found;
+    }
+
+    @Override
+    public List<NumberedTask> query(TaskQuery query) {
+        return select(published, null, query.asPredicate());
+    }
+
+    @Override
+    public List<Task> findBetween(LocalDateTime from, LocalDateTime to) {
+        ArrayList<Task> found = new ArrayList<>();
+        if (from.isAfter(to)) {
+            return found;
+        }
+        TaskQuery query = new TaskQuery().after(from).before(to);
+        for (NumberedTask match : select(published, null, query::test)) {
+            Task task = match.getTask();
+            if (task instanceof Deadline d) {
+                found.addAll(d.occurrencesBetween(from, to));
+            } else {
+                found.addAll(((Event) task).occurrencesBetween(from, to));
+            }
+        }
+        found.sort(BY_TIME); // Stable, so tasks due at the same time stay in list order
+        return found;
+    }
+
+    /**
+     * Finds the position of the task with the given id in the latest snapshot.
+     */
+    @Override
+    public int indexOf(int id) {
+        int index = search(published, id);
+        if (index < 0) {
+            throw new OctoplushException("There is no task #" + id + ".");
+        }
+        return index;
+    }
+
+    @Override
+    public boolean hasId(int id) {
+        return search(published, id) >= 0;
+    }
+
+    @Override
+    public Task findById(int id) {
+        List<Task> all = published;
+        int index = search(all, id);
+        return index < 0 ? null : all.get(index);
+    }
+
+    private static int search(List<Task> all, int id) {
+        int low = 0;
+        int high = all.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = all.get(mid).getId();
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    int idAt(int index) {
+        return get(index).getId();
+    }
+
+    @Override
+    int nextId() {
+        synchronized (writeLock) {
+            return super.nextId();
+        }
+    }
+
+    @Override
+    void checkIndex(int index) {
+        checkIndex(index, published);
+    }
+
+    private static void checkIndex(int index, List<Task> all) {
+        if (index < 0 || index >= all.size()) {
+            throw new OctoplushException("Invalid task number: " + (index + 1));
+        }
+    }
+
+    private static LocalDateTime timeOf(Task task) {
+        return task instanceof Deadline d ? d.getBy() : ((Event) task).getFrom();
+    }
+}
@@ -0,0 +1,100 @@
+package octoplush;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The changes made to a task list, grouped into steps of one command each, that can be undone and redone.
+ * A step only holds the changes themselves and the tasks they touched, so recording one costs the same
+ * however long the list is. Only the newest steps are kept, up to a fixed depth.
+ */
+class History {
+    private final int depth;
+    private final ArrayDeque<List<TaskChange>> undoable = new ArrayDeque<>();
+    private final ArrayDeque<List<TaskChange>> redoable = new ArrayDeque<>();
+    private ArrayList<TaskChange> step = new ArrayList<>();
+    private boolean isPaused;
+
+    /**
+     * Creates an empty history.
+     *
+     * @param depth The number of steps to keep.
+     */
+    History(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Adds a change to the current step, unless the change is itself an undo or redo.
+     */
+    void record(TaskChange change) {
+        if (!isPaused) {
+            step.add(change);
+        }
+    }
+
+    /**
+     * Closes the current step, if it has any changes, making it the one to undo next.
+     * Steps that were undone can no longer be redone after that.
+     */
+    void checkpoint() {
+        if (step.isEmpty()) {
+            return;
+        }
+        push(step);
+        redoable.clear();
+        step = new ArrayList<>();
+    }
+
+    /**
+     * Takes the newest step to undo and keeps it to redo.
+     *
+     * @return The changes of the step in the order they were made, or null if there is none.
+     */
+    List<TaskChange> takeUndo() {
+        checkpoint();
+        List<TaskChange> changes = undoable.poll();
+        if (changes != null) {
+            redoable.push(changes);
+        }
+        return changes;
+    }
+
+    /**
+     * Takes the most recently undone step to redo and keeps it to undo again.
+     *
+     * @return The changes of the step in the order they were made, or null if there is none.
+     */
+    List<TaskChange> takeRedo() {
+        checkpoint();
+        List<TaskChange> changes = redoable.poll();
+        if (changes != null) {
+            push(changes);
+        }
+        return changes;
+    }
+
+    /**
+     * Stops or resumes recording, while the list applies an undo or redo.
+     */
+    void setPaused(boolean isPaused) {
+        this.isPaused = isPaused;
+    }
+
+    /**
+     * Forgets every step, for when the list has changed in ways the steps do not describe.
+     */
+    void clear() {
+        undoable.clear();
+        redoable.clear();
+        step = new ArrayList<>();
+    }
+
+    private void push(List<TaskChange> changes) {
+        undoable.push(changes);
+        if (undoable.size() > depth) {
+            undoable.removeLast();
+        }
+    }
+}
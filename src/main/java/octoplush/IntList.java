@@ -0,0 +1,116 @@
+package octoplush;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, avoiding the boxing of an {@code ArrayList<Integer>}.
+ */
+class IntList {
+    private int[] values;
+    private int size;
+
+    IntList() {
+        this(4);
+    }
+
+    IntList(int capacity) {
+        this.values = new int[Math.max(capacity, 1)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    void insert(int index, int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+    }
+
+    /**
+     * Adds a value to a list that is sorted in ascending order, keeping it sorted.
+     * Appending a value larger than any in the list takes constant time.
+     *
+     * @return false if the value was already present.
+     */
+    boolean addSorted(int value) {
+        if (size == 0 || values[size - 1] < value) {
+            add(value);
+            return true;
+        }
+        int index = binarySearch(value);
+        if (index >= 0) {
+            return false;
+        }
+        insert(-index - 1, value);
+        return true;
+    }
+
+    void removeAt(int index) {
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+    }
+
+    /**
+     * Searches a list that is sorted in ascending order.
+     *
+     * @return The index of the value, or {@code -(insertion point) - 1} if it is absent.
+     */
+    int binarySearch(int value) {
+        return Arrays.binarySearch(values, 0, size, value);
+    }
+
+    /**
+     * Removes a value from a list that is sorted in ascending order.
+     *
+     * @return true if the value was present.
+     */
+    boolean removeSorted(int value) {
+        int index = binarySearch(value);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Removes the values at the given indexes in one pass.
+     *
+     * @param indexes The indexes, in ascending order without repeats.
+     */
+    void removeAll(int[] indexes) {
+        int kept = 0;
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            if (next < indexes.length && indexes[next] == i) {
+                next++;
+            } else {
+                values[kept++] = values[i];
+            }
+        }
+        size = kept;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,174 @@
+package octoplush;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Inverted index from the lowercase words of task descriptions to the ids of the tasks containing them.
+ * Posting lists are kept sorted by id, which is also the order of the tasks in the list.
+ */
+class KeywordIndex {
+    private static final int[] NONE = new int[0];
+
+    private final TreeMap<String, IntList> postings = new TreeMap<>();
+
+    /**
+     * Indexes the words of a task's description. Adding ids in ascending order is fastest.
+     */
+    void add(int id, String description) {
+        for (String token : tokenize(description)) {
+            postings.computeIfAbsent(token, k -> new IntList()).addSorted(id);
+        }
+    }
+
+    /**
+     * Removes a task that was indexed with the given description.
+     */
+    void remove(int id, String description) {
+        for (String token : tokenize(description)) {
+            IntList ids = postings.get(token);
+            if (ids != null && ids.removeSorted(id) && ids.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of tasks with a word that starts with the given lowercase prefix.
+     */
+    int[] matchPrefix(String prefix) {
+        return unionAll(postings.subMap(prefix, prefix + Character.MAX_VALUE).values());
+    }
+
+    /**
+     * Returns the ids of tasks with a word that contains the given lowercase word.
+     * This scans the vocabulary rather than the tasks.
+     */
+    int[] matchWithinWord(String word) {
+        ArrayList<IntList> matching = new ArrayList<>();
+        for (Map.Entry<String, IntList> entry : postings.entrySet()) {
+            if (entry.getKey().contains(word)) {
+                matching.add(entry.getValue());
+            }
+        }
+        return unionAll(matching);
+    }
+
+    private static int[] unionAll(Collection<IntList> lists) {
+        if (lists.isEmpty()) {
+            return NONE;
+        }
+        if (lists.size() == 1) {
+            return lists.iterator().next().toArray();
+        }
+
+        int total = 0;
+        for (IntList ids : lists) {
+            total += ids.size();
+        }
+        int[] all = new int[total];
+        int n = 0;
+        for (IntList ids : lists) {
+            for (int i = 0; i < ids.size(); i++) {
+                all[n++] = ids.get(i);
+            }
+        }
+        Arrays.sort(all);
+        return dedupe(all, n);
+    }
+
+    /**
+     * Checks whether every occurrence of the word lies within a single indexed word,
+     * i.e. whether the index can answer a search for it.
+     */
+    static boolean isIndexable(String word) {
+        if (word.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (!Character.isLetterOrDigit(word.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits a description into its lowercase words.
+     */
+    static String[] tokenize(String description) {
+        String lower = description.toLowerCase();
+        String[] tokens = new String[8];
+        int n = 0;
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean isWordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                if (n == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, n * 2);
+                }
+                tokens[n++] = lower.substring(start, i);
+                start = -1;
+            }
+        }
+        return Arrays.copyOf(tokens, n);
+    }
+
+    /**
+     * Returns the ids present in both sorted arrays.
+     */
+    static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Returns the ids present in either sorted array.
+     */
+    static int[] union(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                out[n++] = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                out[n++] = b[j++];
+            } else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] dedupe(int[] sorted, int length) {
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if (n == 0 || sorted[n - 1] != sorted[i]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+}
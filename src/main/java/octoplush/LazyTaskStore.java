@@ -0,0 +1,278 @@
+package octoplush;
+
+import octoplush.task.Task;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Task store over a memory-mapped binary task file that only indexes record offsets up front.
+ * Tasks are decoded from the file when first requested and kept in a bounded cache; tasks that are
+ * added or changed after loading are pinned in memory so the change is never evicted.
+ */
+class LazyTaskStore implements TaskStore {
+    private static final int NOT_IN_FILE = -1;
+    private static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private final ByteBuffer file;
+    private final int[] offsets;
+    private final int[] recordIds;
+    private final Map<Integer, Task> cache;
+    private int[] records;
+    private Task[] pinned;
+    private int size;
+
+    private LazyTaskStore(ByteBuffer file, int[] offsets, int[] recordIds, int cacheSize) {
+        this.file = file;
+        this.offsets = offsets;
+        this.recordIds = recordIds;
+        this.records = new int[Math.max(offsets.length, 16)];
+        this.pinned = new Task[records.length];
+        this.size = offsets.length;
+        for (int i = 0; i < size; i++) {
+            records[i] = i;
+        }
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Task> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Maps a binary task file and indexes the offset and id of every record in it.
+     * Records without a higher id than the one before them are given a fresh id.
+     *
+     * @param path The binary task file.
+     * @return The store.
+     * @throws IOException If the file cannot be read or is damaged.
+     */
+    static LazyTaskStore open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = BinaryTaskFormat.map(channel);
+            int count = BinaryTaskFormat.count(buf);
+            boolean hasIds = BinaryTaskFormat.hasIds(buf);
+            int[] offsets = new int[count];
+            int[] recordIds = new int[count];
+            int lastId = 0;
+            for (int i = 0; i < count; i++) {
+                offsets[i] = buf.position();
+                byte tag = buf.get();
+                byte flags = buf.get();
+                int id = hasIds ? buf.getInt() : 0;
+                recordIds[i] = id > lastId ? id : lastId + 1;
+                lastId = recordIds[i];
+                int len = buf.getInt();
+                buf.position(buf.position() + len + BinaryTaskFormat.tailSize(tag, flags));
+            }
+            if (buf.hasRemaining()) {
+                throw new IOException("Binary task file has trailing data");
+            }
+            return new LazyTaskStore(buf, offsets, recordIds, DEFAULT_CACHE_SIZE);
+        } catch (RuntimeException e) {
+            throw new IOException("Binary task file is damaged: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the journal sequence number stored in the file's header.
+     */
+    long seq() {
+        return BinaryTaskFormat.seq(file);
+    }
+
+    /**
+     * Returns the next free task id stored in the file's header, or 0 if it has none.
+     */
+    int nextId() {
+        return BinaryTaskFormat.nextId(file);
+    }
+
+    /**
+     * Returns where each record sits in the file, or null if the file's version cannot be patched in place.
+     */
+    RecordLayout layout() {
+        if (BinaryTaskFormat.version(file) != BinaryTaskFormat.VERSION) {
+            return null;
+        }
+        return new RecordLayout(recordIds, offsets, offsets.length, file.limit());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int idAt(int index) {
+        Task task = pinned[index];
+        return task != null ? task.getId() : recordIds[records[index]];
+    }
+
+    @Override
+    public Task get(int index) {
+        Task task = pinned[index];
+        if (task != null) {
+            return task;
+        }
+        int record = records[index];
+        task = cache.get(record);
+        if (task == null) {
+            task = materialize(record);
+            cache.put(record, task);
+        }
+        return task;
+    }
+
+    /**
+     * Returns the description of the task at the given index, decoding it from the file without
+     * caching the task, so scans over the whole list do not flush the cache.
+     */
+    @Override
+    public String descriptionAt(int index) {
+        Task task = pinned[index];
+        if (task != null) {
+            return task.getDescription();
+        }
+        return BinaryTaskFormat.readDescription(file, offsets[records[index]]);
+    }
+
+    @Override
+    public long timeAt(int index) {
+        if (pinned[index] != null) {
+            return TaskStore.super.timeAt(index);
+        }
+        return BinaryTaskFormat.readTime(file, offsets[records[index]]);
+    }
+
+    @Override
+    public boolean isRepeatingAt(int index) {
+        if (pinned[index] != null) {
+            return TaskStore.super.isRepeatingAt(index);
+        }
+        return BinaryTaskFormat.isRepeating(file, offsets[records[index]]);
+    }
+
+    private Task materialize(int record) {
+        try {
+            Task task = BinaryTaskFormat.readRecord(file, offsets[record]);
+            task.setId(recordIds[record]);
+            return task;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void add(Task task) {
+        insert(size, task);
+    }
+
+    @Override
+    public void insert(int index, Task task) {
+        if (size == records.length) {
+            records = Arrays.copyOf(records, size * 2);
+            pinned = Arrays.copyOf(pinned, size * 2);
+        }
+        System.arraycopy(records, index, records, index + 1, size - index);
+        System.arraycopy(pinned, index, pinned, index + 1, size - index);
+        records[index] = NOT_IN_FILE;
+        pinned[index] = task;
+        size++;
+    }
+
+    @Override
+    public Task remove(int index) {
+        Task task = get(index);
+        if (records[index] != NOT_IN_FILE) {
+            cache.remove(records[index]);
+        }
+        System.arraycopy(records, index + 1, records, index, size - index - 1);
+        System.arraycopy(pinned, index + 1, pinned, index, size - index - 1);
+        size--;
+        pinned[size] = null;
+        return task;
+    }
+
+    @Override
+    public List<Task> removeAll(int[] indexes) {
+        ArrayList<Task> removed = new ArrayList<>(indexes.length);
+        int kept = 0;
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            if (next < indexes.length && indexes[next] == i) {
+                removed.add(get(i));
+                if (records[i] != NOT_IN_FILE) {
+                    cache.remove(records[i]);
+                }
+                next++;
+            } else {
+                records[kept] = records[i];
+                pinned[kept] = pinned[i];
+                kept++;
+            }
+        }
+        Arrays.fill(pinned, kept, size, null);
+        size = kept;
+        return removed;
+    }
+
+    @Override
+    public void setDone(int index, boolean isDone) {
+        Task task = get(index);
+        pinned[index] = task;
+        if (isDone) {
+            task.mark();
+        } else {
+            task.unmark();
+        }
+    }
+
+    @Override
+    public List<Task> view() {
+        return new AbstractList<>() {
+            @Override
+            public Task get(int index) {
+                return LazyTaskStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the slot arrays; tasks that are still only in the file are decoded from it
+     * on each access without touching the cache, so the copy can be read from another thread.
+     */
+    @Override
+    public List<Task> snapshot() {
+        int[] recordsCopy = Arrays.copyOf(records, size);
+        Task[] pinnedCopy = Arrays.copyOf(pinned, size);
+        return new AbstractList<>() {
+            @Override
+            public Task get(int index) {
+                Task task = pinnedCopy[index];
+                return task != null ? task : materialize(recordsCopy[index]);
+            }
+
+            @Override
+            public int size() {
+                return recordsCopy.length;
+            }
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package octoplush;
+
+import octoplush.task.Task;
+
+/**
+ * A task together with its number in the list at the time it was selected,
+ * so results can be acted on with {@code mark} or {@code delete}.
+ */
+public class NumberedTask {
+    private final int number;
+    private final Task task;
+
+    /**
+     * Creates a numbered task.
+     *
+     * @param number The 1-based position of the task in the list.
+     * @param task The task.
+     */
+    public NumberedTask(int number, Task task) {
+        this.number = number;
+        this.task = task;
+    }
+
+    /**
+     * Returns the 1-based position of the task in the list.
+     *
+     * @return The task number.
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns the task.
+     *
+     * @return The task.
+     */
+    public Task getTask() {
+        return task;
+    }
+}
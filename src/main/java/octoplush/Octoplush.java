@@ -2,16 +2,27 @@ package octoplush;
 
 import octoplush.command.Command;
 import octoplush.task.Task;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Main class for the Octoplush assistant.
  * Handles initialization, loading tasks from storage, and running the main command loop.
  */
 public class Octoplush {
+    private static final String DATA_FILE = "data/octoplush.txt";
+    private static final int NO_BATCH = -1;
+    private static final int HISTORY_DEPTH = 100;
+    private static final Duration REMINDER_LEAD = Duration.ofMinutes(15);
     private final Storage storage;
+    private final int batchInterval;
     private TaskList tasks;
     private final Ui ui;
+    private final Reminders reminders;
 
     /**
      * Creates an Octoplush instance with the specified file path for task storage.
@@ -19,14 +30,61 @@ public class Octoplush {
      * @param filePath The path to the file where tasks will be stored.
      */
     public Octoplush(String filePath) {
+        this(filePath, NO_BATCH);
+    }
+
+    /**
+     * Creates an Octoplush instance that runs all commands in batches, saving changes together
+     * once the batch holds {@code batchInterval} of them, or only on exit if it is 0.
+     * This suits scripted input, which would otherwise be saved after every command.
+     *
+     * @param filePath The path to the file where tasks will be stored.
+     * @param batchInterval The number of changes to save at a time, 0 to save only on exit,
+     *         or -1 to save after every command.
+     */
+    public Octoplush(String filePath, int batchInterval) {
+        this.batchInterval = batchInterval;
         ui = new Ui();
         storage = new Storage(filePath);
         try {
-            tasks = new TaskList(storage.load());
+            tasks = storage.load();
+            if (storage.isRecoveredFromBackup() || storage.isJournalSetAside()) {
+                ui.showRecoveryWarning(storage.isRecoveredFromBackup());
+            }
         } catch (OctoplushException e) {
             ui.showLoadingError();
             tasks = new TaskList();
         }
+        tasks.keepHistory(HISTORY_DEPTH);
+        reminders = startReminders(tasks, ui);
+        flushOnShutdown(storage);
+    }
+
+    /**
+     * Starts reminding the user of upcoming deadlines and events in the list, keeping up with its changes.
+     */
+    private static Reminders startReminders(TaskList tasks, Ui ui) {
+        Reminders reminders = new Reminders(Clock.systemDefaultZone(), REMINDER_LEAD, id -> {
+            synchronized (tasks) { // The command loop holds the list while running a command
+                return tasks.findById(id);
+            }
+        }, ui::showReminder);
+        tasks.setChangeListener(reminders::update);
+        reminders.start(tasks);
+        return reminders;
+    }
+
+    /**
+     * Changes are written behind the command loop, so write out the last of them if the JVM is stopped.
+     */
+    private static void flushOnShutdown(Storage storage) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                storage.flush();
+            } catch (OctoplushException e) {
+                // Nothing more can be done while shutting down
+            }
+        }, "octoplush-shutdown"));
     }
 
     /**
@@ -35,29 +93,147 @@ public class Octoplush {
      * until the user exits the application.
      */
     public void run() {
+        Stats stats = storage.getStats();
         ui.showWelcome();
         boolean isExit = false;
         while (!isExit) {
-            try {
-                String fullCommand = ui.readCommand();
-                ui.showLine();
-                Command c = Parser.parse(fullCommand);
-                c.execute(tasks, ui, storage);
-                isExit = c.isExit();
-            } catch (OctoplushException e) {
-                ui.showError(e.getMessage());
-            } finally {
-                ui.showLine();
+            String fullCommand = ui.readCommand();
+            synchronized (tasks) { // Reminders look tasks up from their own thread
+                try {
+                    if (batchInterval != NO_BATCH && !storage.isInBatch()) {
+                        storage.beginBatch(tasks);
+                    }
+                    ui.showLine();
+                    long start = System.nanoTime();
+                    Command c = Parser.parse(fullCommand);
+                    stats.record("parse", start);
+                    start = System.nanoTime();
+                    c.execute(tasks, ui, storage);
+                    stats.record(Stats.executeTimer(c), start);
+                    isExit = c.isExit();
+                    if (!isExit && batchInterval > 0 && storage.batchSize() >= batchInterval) {
+                        storage.commitBatch(tasks);
+                    }
+                } catch (OctoplushException e) {
+                    stats.recordError();
+                    ui.showError(e.getMessage());
+                } finally {
+                    tasks.checkpoint(); // Everything the command changed is undone together
+                    ui.showLine();
+                    long start = System.nanoTime();
+                    ui.flush();
+                    stats.record("output", start);
+                }
             }
         }
+        reminders.stop();
     }
 
     /**
      * Entry point for the Octoplush application.
+     * Run with {@code --convert} to convert the task file to the compact binary format and exit,
+     * or with {@code --batch [N]} to save changes N at a time, or only on exit, instead of after every command,
+     * or with {@code --serve PORT} to share the task list with clients connecting to that local port.
+     * Put {@code --stats} first to publish the statistics over JMX and print them to standard error on exit.
      *
-     * @param args Command line arguments (not used).
+     * @param args Command line arguments.
      */
     public static void main(String[] args) {
-        new Octoplush("data/octoplush.txt").run();
+        boolean isStatsPublished = args.length > 0 && args[0].equals("--stats");
+        if (isStatsPublished) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length > 0 && args[0].equals("--convert")) {
+            try {
+                int count = new Storage(DATA_FILE).convertToBinary();
+                System.out.println("Converted " + count + " tasks in " + DATA_FILE + " to the binary format.");
+            } catch (OctoplushException e) {
+                System.out.println(e.getMessage());
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(args.length > 1 ? args[1] : "", isStatsPublished);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            int batchInterval = 0;
+            if (args.length > 1) {
+                try {
+                    batchInterval = Integer.parseInt(args[1]);
+                } catch (NumberFormatException e) {
+                    batchInterval = -1;
+                }
+            }
+            if (batchInterval < 0) {
+                System.out.println("The batch size must be a whole number of changes. Try: --batch 1000");
+                return;
+            }
+            start(new Octoplush(DATA_FILE, batchInterval), isStatsPublished);
+            return;
+        }
+        start(new Octoplush(DATA_FILE), isStatsPublished);
+    }
+
+    private static void start(Octoplush octoplush, boolean isStatsPublished) {
+        if (isStatsPublished) {
+            publishStats(octoplush.storage.getStats());
+        }
+        octoplush.run();
+    }
+
+    /**
+     * Makes the statistics readable over JMX and prints them to standard error on exit.
+     */
+    private static void publishStats(Stats stats) {
+        try {
+            stats.registerMBean();
+        } catch (OctoplushException e) {
+            System.err.println(e.getMessage());
+        }
+        stats.printOnExit(System.err);
+    }
+
+    /**
+     * Serves the task list to clients on a local port until the JVM is stopped.
+     */
+    private static void serve(String portArg, boolean isStatsPublished) {
+        int port;
+        try {
+            port = Integer.parseInt(portArg);
+        } catch (NumberFormatException e) {
+            port = -1;
+        }
+        if (port < 0 || port > 65535) {
+            System.out.println("The port must be a number from 0 to 65535. Try: --serve 4242");
+            return;
+        }
+
+        Ui ui = new Ui();
+        Storage storage = new Storage(DATA_FILE);
+        TaskList tasks;
+        try {
+            tasks = storage.load();
+            if (storage.isRecoveredFromBackup() || storage.isJournalSetAside()) {
+                ui.showRecoveryWarning(storage.isRecoveredFromBackup());
+            }
+        } catch (OctoplushException e) {
+            ui.showLoadingError();
+            tasks = new TaskList();
+        }
+        ui.flush();
+        flushOnShutdown(storage);
+        if (isStatsPublished) {
+            publishStats(storage.getStats());
+        }
+        try {
+            ConcurrentTaskList shared = new ConcurrentTaskList(tasks);
+            startReminders(shared, ui);
+            Server server = new Server(shared, storage, port);
+            System.out.println("Serving " + shared.size() + " tasks on port " + server.getPort() + ".");
+            server.run();
+        } catch (IOException e) {
+            System.out.println("Could not serve the task list: " + e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
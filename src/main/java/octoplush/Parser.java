@@ -2,28 +2,78 @@ package octoplush;
 
 import octoplush.command.Command;
 import octoplush.command.AddCommand;
+import octoplush.command.ArchiveCommand;
+import octoplush.command.BeginCommand;
+import octoplush.command.CommitCommand;
 import octoplush.command.DeleteCommand;
+import octoplush.command.DueCommand;
 import octoplush.command.ExitCommand;
 import octoplush.command.FindCommand;
 import octoplush.command.ListCommand;
 import octoplush.command.MarkCommand;
+import octoplush.command.RedoCommand;
+import octoplush.command.RollbackCommand;
+import octoplush.command.StatsCommand;
+import octoplush.command.UndoCommand;
 import octoplush.command.UnmarkCommand;
 import octoplush.task.Deadline;
 import octoplush.task.Todo;
 import octoplush.task.Event;
+import octoplush.task.Recurrence;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Parses user input into executable commands.
  */
 public class Parser {
-    private static final DateTimeFormatter INPUT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm");
+    private static final String UNKNOWN_COMMAND = "Sorry, I don't recognise that command. Try: list, find, due, on, "
+            + "todo, deadline, event, mark, unmark, delete, archive, undo, redo, begin, commit, rollback, stats, bye.";
+    private static final Map<String, CommandParser> COMMANDS = new HashMap<>();
+    private static final String FIND_OPTION = "\\s+(?=/(?!or(\\s|$))\\S)";
+
+    static {
+        COMMANDS.put("bye", args -> withoutArgs(args, ExitCommand::new));
+        COMMANDS.put("list", args -> args.isEmpty() ? new ListCommand() : new ListCommand(parsePage(args)));
+        COMMANDS.put("begin", args -> withoutArgs(args, BeginCommand::new));
+        COMMANDS.put("commit", args -> withoutArgs(args, CommitCommand::new));
+        COMMANDS.put("rollback", args -> withoutArgs(args, RollbackCommand::new));
+        COMMANDS.put("stats", args -> withoutArgs(args, StatsCommand::new));
+        COMMANDS.put("undo", args -> withoutArgs(args, UndoCommand::new));
+        COMMANDS.put("redo", args -> withoutArgs(args, RedoCommand::new));
+        COMMANDS.put("mark", args -> new MarkCommand(parseTaskSelection(args, "mark")));
+        COMMANDS.put("unmark", args -> new UnmarkCommand(parseTaskSelection(args, "unmark")));
+        COMMANDS.put("delete", args -> new DeleteCommand(parseTaskSelection(args, "delete")));
+        COMMANDS.put("archive", args -> args.isEmpty() ? new ArchiveCommand() : new ArchiveCommand(parseDays(args)));
+        COMMANDS.put("find", Parser::parseFindCommand);
+        COMMANDS.put("due", Parser::parseDueCommand);
+        COMMANDS.put("on", args -> {
+            requireNonEmpty(args, "You must specify a date. Try: on 2025-12-25");
+            LocalDate day = parseDateTime(args).toLocalDate();
+            return new DueCommand(day.atStartOfDay(), day.atTime(23, 59));
+        });
+        COMMANDS.put("todo", args -> {
+            requireNonEmpty(args, "The description of a todo cannot be empty. Try: todo buy milk");
+            return new AddCommand(new Todo(args));
+        });
+        COMMANDS.put("deadline", Parser::parseDeadlineCommand);
+        COMMANDS.put("event", Parser::parseEventCommand);
+    }
+
+    /**
+     * Parses the arguments of one command word into its command.
+     */
+    private interface CommandParser {
+        Command parse(String args) throws OctoplushException;
+    }
 
     /**
      * Parses a user command string and returns the corresponding Command object.
+     * The first word selects the command from a table; the rest of the input is its arguments.
      *
      * @param fullCommand The full command string entered by the user.
      * @return The Command object representing the parsed command.
@@ -31,41 +81,28 @@ public class Parser {
      */
     public static Command parse(String fullCommand) throws OctoplushException {
         String trimmed = fullCommand.trim();
+        int wordEnd = 0;
+        while (wordEnd < trimmed.length() && !Character.isWhitespace(trimmed.charAt(wordEnd))) {
+            wordEnd++;
+        }
 
-        if (trimmed.equals("bye")) {
-            return new ExitCommand();
-        } else if (trimmed.equals("list")) {
-            return new ListCommand();
-        } else if (trimmed.startsWith("mark ") || trimmed.equals("mark")) {
-            int index = parseTaskIndex(trimmed.length() > 4 ? trimmed.substring(5) : "", "mark");
-            return new MarkCommand(index);
-        } else if (trimmed.startsWith("unmark ") || trimmed.equals("unmark")) {
-            int index = parseTaskIndex(trimmed.length() > 6 ? trimmed.substring(7) : "", "unmark");
-            return new UnmarkCommand(index);
-        } else if (trimmed.startsWith("delete ") || trimmed.equals("delete")) {
-            int index = parseTaskIndex(trimmed.length() > 6 ? trimmed.substring(7) : "", "delete");
-            return new DeleteCommand(index);
-        } else if (trimmed.startsWith("find ") || trimmed.equals("find")) {
-            String keyword = trimmed.length() > 4 ? trimmed.substring(5).trim() : "";
-            requireNonEmpty(keyword, "The search keyword cannot be empty. Try: find book");
-            return new FindCommand(keyword);
-
-        } else if (trimmed.startsWith("todo ") || trimmed.equals("todo")) {
-            String desc = trimmed.length() > 4 ? trimmed.substring(5).trim() : "";
-            requireNonEmpty(desc, "The description of a todo cannot be empty. Try: todo buy milk");
-            return new AddCommand(new Todo(desc));
-        } else if (trimmed.startsWith("deadline ") || trimmed.equals("deadline")) {
-            return parseDeadlineCommand(trimmed);
-        } else if (trimmed.startsWith("event ") || trimmed.equals("event")) {
-            return parseEventCommand(trimmed);
-        } else {
-            throw new OctoplushException("Sorry, I don't recognise that command. Try: list, find, todo, deadline, " +
-                    "event, mark, unmark, bye.");
-        }
-    }
-
-    private static Command parseDeadlineCommand(String command) throws OctoplushException {
-        String rest = (command.length() >= 8 ? command.substring(8) : "").trim();
+        CommandParser parser = COMMANDS.get(trimmed.substring(0, wordEnd));
+        if (parser == null) {
+            throw new OctoplushException(UNKNOWN_COMMAND);
+        }
+        return parser.parse(trimmed.substring(wordEnd).trim());
+    }
+
+    private static Command withoutArgs(String args, Supplier<Command> command) throws OctoplushException {
+        if (!args.isEmpty()) {
+            throw new OctoplushException(UNKNOWN_COMMAND);
+        }
+        return command.get();
+    }
+
+    private static Command parseDeadlineCommand(String args) throws OctoplushException {
+        int everyIdx = repeatOptionIndex(args);
+        String rest = args.substring(0, everyIdx);
         int byIdx = rest.indexOf("/by ");
 
         if (byIdx < 0) {
@@ -79,11 +116,13 @@ public class Parser {
         requireNonEmpty(by, "The '/by' time for a deadline cannot be empty.");
 
         LocalDateTime byDate = parseDateTime(by);
-        return new AddCommand(new Deadline(desc, byDate));
+        Recurrence recurrence = parseRecurrence(args.substring(everyIdx), byDate, "deadline");
+        return new AddCommand(new Deadline(desc, byDate, recurrence));
     }
 
-    private static Command parseEventCommand(String command) throws OctoplushException {
-        String rest = (command.length() >= 5 ? command.substring(5) : "").trim();
+    private static Command parseEventCommand(String args) throws OctoplushException {
+        int everyIdx = repeatOptionIndex(args);
+        String rest = args.substring(0, everyIdx);
         int fromIdx = rest.indexOf("/from ");
         int toIdx = rest.indexOf("/to ");
 
@@ -101,7 +140,225 @@ public class Parser {
 
         LocalDateTime fromDate = parseDateTime(from);
         LocalDateTime toDate = parseDateTime(to);
-        return new AddCommand(new Event(desc, fromDate, toDate));
+        Recurrence recurrence = parseRecurrence(args.substring(everyIdx), fromDate, "event");
+        return new AddCommand(new Event(desc, fromDate, toDate, recurrence));
+    }
+
+    /**
+     * Finds where the options {@code /every} and {@code /until} of a deadline or an event start.
+     *
+     * @return The index of {@code /every}, or the length of the arguments if the task does not repeat.
+     */
+    private static int repeatOptionIndex(String args) throws OctoplushException {
+        int everyIdx = args.indexOf("/every ");
+        int untilIdx = args.indexOf("/until ");
+        if (untilIdx >= 0 && (everyIdx < 0 || untilIdx < everyIdx)) {
+            throw new OctoplushException("'/until' ends a repeating task, so it must come after '/every'. "
+                    + "Try: deadline pay rent /by 2026-01-01 /every monthly /until 2026-12-31");
+        }
+        return everyIdx < 0 ? args.length() : everyIdx;
+    }
+
+    /**
+     * Parses the options {@code /every daily|weekly|monthly} and {@code /until DATE} that make a deadline
+     * or an event repeat.
+     *
+     * @param options The options, or an empty string if the task does not repeat.
+     * @param first When the first occurrence is due or starts.
+     * @return The rule, or null if the task does not repeat.
+     */
+    private static Recurrence parseRecurrence(String options, LocalDateTime first, String type)
+            throws OctoplushException {
+        if (options.isEmpty()) {
+            return null;
+        }
+        int untilIdx = options.indexOf("/until ");
+        String every = options.substring(7, untilIdx < 0 ? options.length() : untilIdx).trim();
+
+        Recurrence.Frequency frequency;
+        switch (every) {
+        case "daily":
+            frequency = Recurrence.Frequency.DAILY;
+            break;
+        case "weekly":
+            frequency = Recurrence.Frequency.WEEKLY;
+            break;
+        case "monthly":
+            frequency = Recurrence.Frequency.MONTHLY;
+            break;
+        default:
+            throw new OctoplushException("The '/every' rule of a " + type + " must be daily, weekly or monthly.");
+        }
+
+        LocalDateTime until = null;
+        if (untilIdx >= 0) {
+            String end = options.substring(untilIdx + 7).trim();
+            requireNonEmpty(end, "The '/until' end of a repeating " + type + " cannot be empty.");
+            until = parseDateTime(end);
+            if (until.isBefore(first)) {
+                throw new OctoplushException("The '/until' end of a repeating " + type
+                        + " cannot be before its first occurrence.");
+            }
+        }
+        return new Recurrence(frequency, until);
+    }
+
+    /**
+     * Parses search keywords followed by any of the options {@code /done}, {@code /undone},
+     * {@code /type TYPE}, {@code /after DATE}, {@code /before DATE} and {@code /all}.
+     */
+    private static Command parseFindCommand(String rest) throws OctoplushException {
+        requireNonEmpty(rest, "The search keyword cannot be empty. Try: find book");
+
+        String[] parts = (" " + rest).split(FIND_OPTION);
+        TaskQuery query = new TaskQuery();
+        boolean isArchiveSearched = false;
+        if (!parts[0].isBlank()) {
+            query.containing(parts[0].trim());
+        }
+        for (int i = 1; i < parts.length; i++) {
+            String option = parts[i].trim();
+            int nameEnd = option.indexOf(' ');
+            String name = nameEnd < 0 ? option : option.substring(0, nameEnd);
+            String value = nameEnd < 0 ? "" : option.substring(nameEnd + 1).trim();
+            switch (name) {
+            case "/done":
+            case "/undone":
+                requireNoValue(name, value);
+                query.done(name.equals("/done"));
+                break;
+            case "/all":
+                requireNoValue(name, value);
+                isArchiveSearched = true;
+                break;
+            case "/type":
+                query.ofType(parseTaskType(value));
+                break;
+            case "/after":
+                requireNonEmpty(value, "The '/after' time cannot be empty.");
+                LocalDateTime after = parseDateTime(value);
+                query.after(value.contains(" ") ? after : after.toLocalDate().atStartOfDay());
+                break;
+            case "/before":
+                requireNonEmpty(value, "The '/before' time cannot be empty.");
+                LocalDateTime before = parseDateTime(value);
+                query.before(value.contains(" ") ? before : before.toLocalDate().atTime(23, 59));
+                break;
+            default:
+                throw new OctoplushException("Unknown search option '" + name
+                        + "'. Use /done, /undone, /type, /after, /before or /all.");
+            }
+        }
+        return new FindCommand(query, isArchiveSearched);
+    }
+
+    private static void requireNoValue(String option, String value) throws OctoplushException {
+        if (!value.isEmpty()) {
+            throw new OctoplushException("The '" + option + "' option takes no value.");
+        }
+    }
+
+    private static char parseTaskType(String type) throws OctoplushException {
+        switch (type) {
+        case "todo":
+            return 'T';
+        case "deadline":
+            return 'D';
+        case "event":
+            return 'E';
+        default:
+            throw new OctoplushException("The '/type' must be todo, deadline or event. Try: find /type deadline");
+        }
+    }
+
+    private static Command parseDueCommand(String rest) throws OctoplushException {
+        int toIdx = rest.indexOf("/to ");
+
+        if (toIdx < 0) {
+            throw new OctoplushException("Invalid due format. Use: due <start> /to <end>");
+        }
+
+        String from = rest.substring(0, toIdx).trim();
+        String to = rest.substring(toIdx + 4).trim();
+
+        requireNonEmpty(from, "The start of the period cannot be empty.");
+        requireNonEmpty(to, "The '/to' end of the period cannot be empty.");
+
+        LocalDateTime fromDate = parseDateTime(from);
+        if (!from.contains(" ")) {
+            fromDate = fromDate.toLocalDate().atStartOfDay(); // A date alone starts the period at midnight
+        }
+        return new DueCommand(fromDate, parseDateTime(to));
+    }
+
+    private static int parsePage(String pageStr) throws OctoplushException {
+        try {
+            int page = Integer.parseInt(pageStr);
+            if (page < 1) {
+                throw new OctoplushException("Page number must be positive.");
+            }
+            return page;
+        } catch (NumberFormatException e) {
+            throw new OctoplushException("Page number must be an integer. Try: list 2");
+        }
+    }
+
+    private static int parseDays(String daysStr) throws OctoplushException {
+        try {
+            int days = Integer.parseInt(daysStr);
+            if (days < 0) {
+                throw new OctoplushException("Number of days cannot be negative.");
+            }
+            return days;
+        } catch (NumberFormatException e) {
+            throw new OctoplushException("Number of days must be an integer. Try: archive 30");
+        }
+    }
+
+    /**
+     * Parses the tasks to act on: a comma-separated list of task numbers, ranges of numbers such as
+     * {@code 9-20}, ids such as {@code #7}, and the words {@code done} and {@code undone}.
+     */
+    private static TaskSelection parseTaskSelection(String args, String cmdName) throws OctoplushException {
+        TaskSelection selection = new TaskSelection();
+        for (String part : args.split(",", -1)) {
+            String entry = part.trim();
+            int dash = entry.indexOf('-', 1);
+            if (entry.equals("done") || entry.equals("undone")) {
+                selection.done(entry.equals("done"));
+            } else if (dash > 0 && !entry.startsWith("#")) {
+                int from = parseTaskIndex(entry.substring(0, dash), cmdName);
+                int to = parseTaskIndex(entry.substring(dash + 1), cmdName);
+                if (from > to) {
+                    throw new OctoplushException("A range must go from the lower task number to the higher one. Try: "
+                            + cmdName + " " + (to + 1) + "-" + (from + 1));
+                }
+                selection.range(from, to);
+            } else {
+                selection.task(parseTaskRef(entry, cmdName));
+            }
+        }
+        return selection;
+    }
+
+    /**
+     * Parses a task number, or a task id when prefixed with {@code #}.
+     */
+    private static TaskRef parseTaskRef(String refStr, String cmdName) throws OctoplushException {
+        String trimmed = (refStr == null ? "" : refStr.trim());
+
+        if (trimmed.startsWith("#")) {
+            try {
+                int id = Integer.parseInt(trimmed.substring(1).trim());
+                if (id < 1) {
+                    throw new OctoplushException("Task id must be positive.");
+                }
+                return TaskRef.ofId(id);
+            } catch (NumberFormatException e) {
+                throw new OctoplushException("Task id must be an integer for '" + cmdName + "'.");
+            }
+        }
+        return TaskRef.ofIndex(parseTaskIndex(trimmed, cmdName));
     }
 
     private static int parseTaskIndex(String indexStr, String cmdName) throws OctoplushException {
@@ -126,43 +383,98 @@ public class Parser {
      * Parses a date/time string with flexible formats.
      * Accepts: yyyy-MM-dd HHmm, yyyy-MM-dd, or MM-dd (assumes current year and defaults time to 23:59).
      * For MM-dd format, if the date has already passed this year, assumes next year.
+     * The input is scanned by hand, so no format is tried and failed on the way to the one that matches.
      *
      * @param dateTimeStr The date/time string to parse.
      * @return The parsed LocalDateTime.
      * @throws OctoplushException If the format is invalid.
      */
     private static LocalDateTime parseDateTime(String dateTimeStr) throws OctoplushException {
-        try {
-            // Try full format: yyyy-MM-dd HHmm
-            return LocalDateTime.parse(dateTimeStr, INPUT_FORMAT);
-        } catch (DateTimeParseException e1) {
-            try {
-                // Try date only: yyyy-MM-dd (default to 23:59)
-                DateTimeFormatter dateOnly = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-                return LocalDateTime.parse(dateTimeStr + " 2359", INPUT_FORMAT);
-            } catch (DateTimeParseException e2) {
-                try {
-                    // Try MM-dd (assume current year, default to 23:59)
-                    LocalDateTime now = LocalDateTime.now();
-                    int currentYear = now.getYear();
-                    String fullDate = currentYear + "-" + dateTimeStr;
-                    LocalDateTime parsed = LocalDateTime.parse(fullDate + " 2359", INPUT_FORMAT);
-
-                    // If the date is in the past (compare dates only), use next year instead
-                    if (parsed.toLocalDate().isBefore(now.toLocalDate())) {
-                        fullDate = (currentYear + 1) + "-" + dateTimeStr;
-                        parsed = LocalDateTime.parse(fullDate + " 2359", INPUT_FORMAT);
-                    }
-
-                    return parsed;
-                } catch (DateTimeParseException e3) {
-                    throw new OctoplushException(
-                        "Invalid date format. Use: yyyy-MM-dd HHmm, yyyy-MM-dd, or MM-dd\n" +
-                        "Examples: 2024-12-25 1800, 2024-12-25, or 12-25"
-                    );
-                }
+        LocalDateTime parsed = scanDateTime(dateTimeStr);
+        if (parsed == null) {
+            throw new OctoplushException(
+                "Invalid date format. Use: yyyy-MM-dd HHmm, yyyy-MM-dd, or MM-dd\n" +
+                "Examples: 2024-12-25 1800, 2024-12-25, or 12-25"
+            );
+        }
+        return parsed;
+    }
+
+    private static LocalDateTime scanDateTime(String s) {
+        int hour = 23;
+        int minute = 59;
+        switch (s.length()) {
+        case 5: // MM-dd
+            return scanMonthDay(s);
+        case 10: // yyyy-MM-dd
+            break;
+        case 15: // yyyy-MM-dd HHmm
+            int time = s.charAt(10) == ' ' ? scanDigits(s, 11, 4) : -1;
+            if (time < 0) {
+                return null;
+            }
+            hour = time / 100;
+            minute = time % 100;
+            break;
+        default:
+            return null;
+        }
+
+        int year = scanDigits(s, 0, 4);
+        int month = scanDigits(s, 5, 2);
+        int day = scanDigits(s, 8, 2);
+        if (year < 0 || month < 0 || day < 0 || s.charAt(4) != '-' || s.charAt(7) != '-') {
+            return null;
+        }
+        return toDateTime(year, month, day, hour, minute);
+    }
+
+    private static LocalDateTime scanMonthDay(String s) {
+        int month = scanDigits(s, 0, 2);
+        int day = scanDigits(s, 3, 2);
+        if (month < 0 || day < 0 || s.charAt(2) != '-') {
+            return null;
+        }
+
+        LocalDate today = LocalDate.now();
+        LocalDateTime parsed = toDateTime(today.getYear(), month, day, 23, 59);
+        if (parsed != null && parsed.toLocalDate().isBefore(today)) {
+            parsed = toDateTime(today.getYear() + 1, month, day, 23, 59);
+        }
+        return parsed;
+    }
+
+    /**
+     * Builds a date-time as leniently as the formatter this scanner replaced: days up to 31 are
+     * clamped to the last day of the month, and 2400 is midnight at the end of the day.
+     *
+     * @return The date-time, or null if a field is out of range.
+     */
+    private static LocalDateTime toDateTime(int year, int month, int day, int hour, int minute) {
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31 || minute > 59
+                || hour > 24 || (hour == 24 && minute > 0)) {
+            return null;
+        }
+        LocalDate date = LocalDate.of(year, month, 1);
+        date = date.withDayOfMonth(Math.min(day, date.lengthOfMonth()));
+        return hour == 24 ? date.plusDays(1).atStartOfDay() : date.atTime(hour, minute);
+    }
+
+    /**
+     * Reads a fixed number of ASCII digits.
+     *
+     * @return Their value, or -1 if any of them is not a digit.
+     */
+    private static int scanDigits(String s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
             }
+            value = value * 10 + (c - '0');
         }
+        return value;
     }
 
     private static void requireNonEmpty(String s, String messageIfEmpty) throws OctoplushException {
@@ -0,0 +1,73 @@
+package octoplush;
+
+import java.util.Arrays;
+
+/**
+ * Where each task's record sits in a binary task file, so single records can be patched in place.
+ * Ids increase along the file. Instances are never changed; appending records returns a new layout.
+ */
+final class RecordLayout {
+    private final int[] ids;
+    private final int[] offsets;
+    private final int count;
+    private final int recordsEnd;
+
+    /**
+     * Creates a layout of the first {@code count} entries of the arrays, which must not change afterwards.
+     *
+     * @param ids The task ids, in file order.
+     * @param offsets The offset of each record's tag byte.
+     * @param count The number of records.
+     * @param recordsEnd The offset just past the last record.
+     */
+    RecordLayout(int[] ids, int[] offsets, int count, int recordsEnd) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.count = count;
+        this.recordsEnd = recordsEnd;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int recordsEnd() {
+        return recordsEnd;
+    }
+
+    int idAt(int index) {
+        return ids[index];
+    }
+
+    int offsetAt(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * Finds the position of the record of the task with the given id.
+     *
+     * @return The 0-based index of the record, or a negative number if the file has none.
+     */
+    int indexOf(int id) {
+        return Arrays.binarySearch(ids, 0, count, id);
+    }
+
+    /**
+     * Returns the layout after records have been appended.
+     *
+     * @param newIds The ids of the appended tasks.
+     * @param newOffsets The offsets of the appended records.
+     * @param newEnd The offset just past the last appended record.
+     * @return The new layout.
+     */
+    RecordLayout append(int[] newIds, int[] newOffsets, int newEnd) {
+        if (newIds.length == 0) {
+            return new RecordLayout(ids, offsets, count, newEnd);
+        }
+        int[] allIds = Arrays.copyOf(ids, count + newIds.length);
+        int[] allOffsets = Arrays.copyOf(offsets, count + newIds.length);
+        System.arraycopy(newIds, 0, allIds, count, newIds.length);
+        System.arraycopy(newOffsets, 0, allOffsets, count, newIds.length);
+        return new RecordLayout(allIds, allOffsets, allIds.length, newEnd);
+    }
+}
@@ -0,0 +1,221 @@
+package octoplush;
+
+import octoplush.task.Deadline;
+import octoplush.task.Event;
+import octoplush.task.Task;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Reminds the user shortly before each deadline is due and each event starts.
+ *
+ * <p>Every deadline and event that is not done and still ahead has one timer in a {@link TimingWheel},
+ * set to go off a fixed lead time before it. A timer is only an id and a minute: the task is looked up
+ * by its id when the timer goes off, so a list loaded lazily or kept in columns is not built into task
+ * objects for its reminders. Timers are set when the list is loaded, from the times its store keeps, and
+ * kept up to date from the list's changes, each in constant time, and a single background thread
+ * advances the wheel. A repeating task only ever has a timer for its next occurrence, which is replaced
+ * by the one after when it goes off.</p>
+ *
+ * <p>All times come from the given clock, so the reminders can be driven by a fixed clock and
+ * {@link #fireDue()} without the background thread.</p>
+ */
+public class Reminders {
+    private static final long TICK_MILLIS = 1000;
+
+    private final Clock clock;
+    private final long leadMinutes;
+    private final IntFunction<Task> lookup;
+    private final Consumer<Task> sink;
+    private final TimingWheel wheel;
+    private final ConcurrentLinkedQueue<TaskChange> changes = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService ticker;
+
+    /**
+     * Creates reminders with no timers.
+     *
+     * @param clock The clock to read the time from.
+     * @param lead How long before a deadline or the start of an event to remind the user.
+     * @param lookup Gets the task with an id as it is now, or null if it is gone. It is called on the
+     *     thread that advances the reminders.
+     * @param sink Receives each deadline or event to remind the user of, as the occurrence that is coming up
+     *     for a repeating task. It is called on the thread that advances the reminders.
+     */
+    public Reminders(Clock clock, Duration lead, IntFunction<Task> lookup, Consumer<Task> sink) {
+        this.clock = clock;
+        this.leadMinutes = lead.toMinutes();
+        this.lookup = lookup;
+        this.sink = sink;
+        this.wheel = new TimingWheel(currentMinute());
+    }
+
+    /**
+     * Sets timers for the deadlines and events in a list, then keeps firing reminders as they come due
+     * on a background thread until {@link #stop()}. The list is scanned on the calling thread, so it
+     * must not be changed meanwhile; only the ids and times found are handed to the background thread.
+     *
+     * @param tasks The task list.
+     */
+    public void start(TaskList tasks) {
+        int[] ids = new int[16];
+        long[] minutes = new long[16];
+        int count = 0;
+        TaskStore store = tasks.store();
+        long now = currentMinute();
+        for (int i = 0; i < store.size(); i++) {
+            long time = store.timeAt(i);
+            if (time == TaskStore.NO_TIME) {
+                continue;
+            }
+            if (store.isRepeatingAt(i)) {
+                // Repeating tasks are few, so building them to find their next occurrence is cheap
+                Task occurrence = nextOccurrence(store.get(i), BinaryTaskFormat.fromEpochMinute(now));
+                time = occurrence == null ? TaskStore.NO_TIME : BinaryTaskFormat.toEpochMinute(timeOf(occurrence));
+            }
+            if (time == TaskStore.NO_TIME || time < now) {
+                continue;
+            }
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                minutes = Arrays.copyOf(minutes, count * 2);
+            }
+            ids[count] = store.idAt(i);
+            minutes[count] = time - leadMinutes;
+            count++;
+        }
+
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "octoplush-reminders");
+            t.setDaemon(true);
+            return t;
+        });
+        int[] foundIds = ids;
+        long[] foundMinutes = minutes;
+        int found = count;
+        ticker.execute(() -> {
+            synchronized (this) {
+                for (int i = 0; i < found; i++) {
+                    wheel.schedule(foundIds[i], foundMinutes[i]);
+                }
+            }
+        });
+        ticker.scheduleWithFixedDelay(this::fireDue, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background thread. Reminders that have not fired yet are dropped.
+     */
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * Brings the timers up to date with a change to the task list: added and unmarked tasks get a
+     * timer, and deleted and marked ones lose theirs. Meant to be the list's change listener. The change
+     * is only queued, and is applied before the timers are next advanced, so the list's thread never
+     * waits for the reminders.
+     *
+     * @param change The change.
+     */
+    public void update(TaskChange change) {
+        changes.add(change);
+    }
+
+    /**
+     * Advances the timers to the clock's current time and reminds the user of every task whose
+     * timer went off, earliest first. Occurrences that have already passed, e.g. while the computer
+     * was asleep, are skipped.
+     *
+     * @return The number of reminders given.
+     */
+    public int fireDue() {
+        ArrayList<Task> due = new ArrayList<>();
+        synchronized (this) {
+            applyChanges();
+            long now = currentMinute();
+            LocalDateTime current = BinaryTaskFormat.fromEpochMinute(now);
+            ArrayList<TimingWheel.Timer> fired = new ArrayList<>();
+            wheel.advance(now, fired::add);
+            for (TimingWheel.Timer timer : fired) {
+                Task task = lookup.apply(timer.id());
+                if (task == null) {
+                    continue;
+                }
+                LocalDateTime time = BinaryTaskFormat.fromEpochMinute(timer.minute() + leadMinutes);
+                Task occurrence = nextOccurrence(task, time);
+                if (occurrence != null && !occurrence.isDone() && timeOf(occurrence).equals(time)
+                        && !time.isBefore(current)) {
+                    due.add(occurrence);
+                }
+                schedule(task, time.isBefore(current) ? current : time.plusMinutes(1));
+            }
+        }
+        for (Task task : due) {
+            sink.accept(task);
+        }
+        return due.size();
+    }
+
+    /**
+     * Returns the number of tasks with a reminder still to come, as of the last time the timers were advanced.
+     */
+    public synchronized int size() {
+        return wheel.size();
+    }
+
+    private void applyChanges() {
+        TaskChange change;
+        while ((change = changes.poll()) != null) {
+            switch (change.getKind()) {
+            case ADDED:
+            case UNMARKED:
+                schedule(change.getTask(), BinaryTaskFormat.fromEpochMinute(Math.max(currentMinute(), wheel.now())));
+                break;
+            default:
+                wheel.cancel(change.getTask().getId());
+                break;
+            }
+        }
+    }
+
+    /**
+     * Sets the timer for the first occurrence of a task at or after the given time, if it has one
+     * and is not done.
+     */
+    private void schedule(Task task, LocalDateTime from) {
+        Task occurrence = task.isDone() ? null : nextOccurrence(task, from);
+        if (occurrence == null) {
+            wheel.cancel(task.getId());
+            return;
+        }
+        wheel.schedule(task.getId(), BinaryTaskFormat.toEpochMinute(timeOf(occurrence)) - leadMinutes);
+    }
+
+    private static Task nextOccurrence(Task task, LocalDateTime from) {
+        if (task instanceof Deadline d) {
+            return d.nextOccurrence(from);
+        }
+        return task instanceof Event e ? e.nextOccurrence(from) : null;
+    }
+
+    private static LocalDateTime timeOf(Task occurrence) {
+        return occurrence instanceof Deadline d ? d.getBy() : ((Event) occurrence).getFrom();
+    }
+
+    private long currentMinute() {
+        return BinaryTaskFormat.toEpochMinute(LocalDateTime.now(clock).truncatedTo(ChronoUnit.MINUTES));
+    }
+}
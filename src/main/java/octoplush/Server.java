@@ -0,0 +1,370 @@
+package octoplush;
+
+import octoplush.command.BeginCommand;
+import octoplush.command.Command;
+import octoplush.command.CommitCommand;
+import octoplush.command.RedoCommand;
+import octoplush.command.RollbackCommand;
+import octoplush.command.UndoCommand;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves one task list to many clients over TCP on the loopback interface. Each connection is a session
+ * that sends commands one per line and gets back the same output as the console would show.
+ *
+ * <p>One selector thread accepts connections, reads their input and writes out their output, so idle
+ * connections hold no thread. Complete lines are run on a small pool of workers, one line at a time per
+ * session. Commands that only read the list run side by side; commands that change it run one at a time,
+ * so changes reach the list and the journal in the same order.</p>
+ *
+ * <p>Batches and undo are not available, since their changes would mix with those of other sessions,
+ * and {@code bye} only ends the session.</p>
+ */
+public class Server {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int MAX_PENDING_OUTPUT = 1 << 20;
+
+    private final TaskList tasks;
+    private final Storage storage;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Object changeLock = new Object();
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private volatile boolean isClosed;
+
+    /**
+     * Opens a server on the given port of the loopback interface. Connections are accepted once
+     * {@link #run()} is called.
+     *
+     * @param tasks The task list to share, normally a {@link ConcurrentTaskList}.
+     * @param storage The storage the changes are saved to.
+     * @param port The port to listen on, or 0 to pick a free one.
+     * @throws IOException If the port cannot be opened.
+     */
+    public Server(TaskList tasks, Storage storage, int port) throws IOException {
+        this.tasks = tasks;
+        this.storage = storage;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        AtomicInteger workerCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread thread = new Thread(r, "octoplush-session-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new OctoplushException("The server is closed.");
+        }
+    }
+
+    /**
+     * Serves clients until {@link #close()} is called.
+     *
+     * @throws IOException If the server cannot accept or serve connections.
+     */
+    public void run() throws IOException {
+        try {
+            while (!isClosed) {
+                selector.select();
+                for (Runnable task = selectorTasks.poll(); task != null; task = selectorTasks.poll()) {
+                    task.run();
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    handle(key);
+                }
+                selector.selectedKeys().clear();
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes every session. Commands that are running are finished.
+     */
+    public void close() {
+        isClosed = true;
+        selector.wakeup();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                accept();
+                return;
+            }
+            Session session = (Session) key.attachment();
+            if (key.isWritable()) {
+                session.writePending();
+            }
+            if (key.isValid() && key.isReadable()) {
+                session.read();
+            }
+        } catch (IOException e) {
+            closeQuietly(key);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        Session session = new Session(key);
+        key.attach(session);
+        session.welcome();
+    }
+
+    /**
+     * Runs a task on the selector thread, which owns the interest sets of the keys.
+     */
+    private void onSelector(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // The connection is gone either way
+        }
+    }
+
+    /**
+     * State of one connection: the input not yet run and the output not yet written.
+     * The lines and pending output are shared between the selector thread and a worker,
+     * so both are only touched while holding the session's lock.
+     */
+    private final class Session {
+        private final SelectionKey key;
+        private final SocketChannel channel;
+        private final ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+        private final Ui ui = new Ui(InputStream.nullInputStream(),
+                new PrintStream(rendered, false, StandardCharsets.UTF_8));
+        private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+        private final ArrayDeque<String> lines = new ArrayDeque<>();
+        private ByteBuffer pending;
+        private boolean isRunning;
+        private boolean isEnding;
+
+        Session(SelectionKey key) {
+            this.key = key;
+            this.channel = (SocketChannel) key.channel();
+        }
+
+        void welcome() {
+            ui.showWelcome();
+            send(takeOutput());
+        }
+
+        /**
+         * Reads what the client has sent and queues each complete line to be run. Runs on the selector thread.
+         */
+        void read() throws IOException {
+            readBuffer.clear();
+            int count = channel.read(readBuffer);
+            if (count < 0) {
+                closeQuietly(key);
+                return;
+            }
+            readBuffer.flip();
+            boolean hasLines = false;
+            while (readBuffer.hasRemaining()) {
+                byte b = readBuffer.get();
+                if (b != '\n') {
+                    partialLine.write(b);
+                    if (partialLine.size() > MAX_LINE_LENGTH) {
+                        closeQuietly(key); // Not a client of ours
+                        return;
+                    }
+                    continue;
+                }
+                String line = partialLine.toString(StandardCharsets.UTF_8).trim();
+                partialLine.reset();
+                if (!line.isEmpty()) {
+                    synchronized (this) {
+                        lines.add(line);
+                    }
+                    hasLines = true;
+                }
+            }
+            if (hasLines) {
+                synchronized (this) {
+                    if (!isRunning && !isEnding) {
+                        isRunning = true;
+                        workers.execute(this::runLines);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Runs the queued lines in order until none are left. Runs on a worker.
+         */
+        private void runLines() {
+            try {
+                while (true) {
+                    String line;
+                    synchronized (this) {
+                        line = lines.poll();
+                        if (line == null || isEnding || !key.isValid()) {
+                            isRunning = false;
+                            return;
+                        }
+                    }
+                    runLine(line);
+                    send(takeOutput());
+                }
+            } catch (RuntimeException e) {
+                closeQuietly(key); // A failed command must not leave the session waiting for ever
+                throw e;
+            }
+        }
+
+        private void runLine(String line) {
+            Stats stats = storage.getStats();
+            ui.showLine();
+            try {
+                long start = System.nanoTime();
+                Command command = Parser.parse(line);
+                stats.record("parse", start);
+                start = System.nanoTime();
+                if (command.isExit()) {
+                    ui.showGoodbye();
+                    synchronized (this) {
+                        isEnding = true;
+                    }
+                } else if (command instanceof BeginCommand || command instanceof CommitCommand
+                        || command instanceof RollbackCommand) {
+                    throw new OctoplushException("Batches are not available while the list is shared.");
+                } else if (command instanceof UndoCommand || command instanceof RedoCommand) {
+                    throw new OctoplushException("Undo is not available while the list is shared.");
+                } else if (command.isReadOnly()) {
+                    command.execute(tasks, ui, storage);
+                } else {
+                    synchronized (changeLock) {
+                        command.execute(tasks, ui, storage);
+                    }
+                }
+                stats.record(Stats.executeTimer(command), start);
+            } catch (OctoplushException e) {
+                stats.recordError();
+                ui.showError(e.getMessage());
+            } finally {
+                ui.showLine();
+            }
+        }
+
+        private ByteBuffer takeOutput() {
+            ui.flush();
+            ByteBuffer output = ByteBuffer.wrap(rendered.toByteArray());
+            rendered.reset();
+            return output;
+        }
+
+        /**
+         * Writes output to the client, leaving what does not fit for the selector thread to write
+         * once the client has read some. Reading stops while too much output is waiting.
+         */
+        private synchronized void send(ByteBuffer output) {
+            try {
+                if (pending == null) {
+                    channel.write(output);
+                    if (output.hasRemaining()) {
+                        pending = output;
+                        onSelector(() -> setInterest(SelectionKey.OP_WRITE, true));
+                    }
+                } else {
+                    ByteBuffer joined = ByteBuffer.allocate(pending.remaining() + output.remaining());
+                    pending = joined.put(pending).put(output).flip();
+                }
+                if (pending != null && pending.remaining() > MAX_PENDING_OUTPUT) {
+                    onSelector(() -> setInterest(SelectionKey.OP_READ, false));
+                }
+                endIfDone();
+            } catch (IOException e) {
+                closeQuietly(key);
+            }
+        }
+
+        /**
+         * Writes as much of the waiting output as the client will take. Runs on the selector thread.
+         */
+        synchronized void writePending() throws IOException {
+            if (pending != null) {
+                channel.write(pending);
+                if (pending.hasRemaining()) {
+                    return;
+                }
+                pending = null;
+            }
+            setInterest(SelectionKey.OP_WRITE, false);
+            setInterest(SelectionKey.OP_READ, true);
+            endIfDone();
+        }
+
+        private void endIfDone() {
+            if (isEnding && pending == null) {
+                closeQuietly(key);
+            }
+        }
+
+        private void setInterest(int op, boolean isOn) {
+            if (key.isValid()) {
+                key.interestOps(isOn ? key.interestOps() | op : key.interestOps() & ~op);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package octoplush;
+
+import octoplush.command.Command;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts and times the work done for each command: parsing it, executing it, writing its output, and
+ * loading and saving the task file. Every timer keeps a {@link LatencyHistogram}, so recording is cheap
+ * enough to stay on all the time. The figures are shown by the {@code stats} command, and can be read
+ * over JMX once {@link #registerMBean()} has been called.
+ */
+public class Stats implements StatsMXBean {
+    private static final String OBJECT_NAME = "octoplush:type=Stats";
+    private static final ClassValue<String> EXECUTE_TIMERS = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            String name = type.getSimpleName().replaceFirst("Command$", "");
+            return "execute." + name.toLowerCase(Locale.ROOT);
+        }
+    };
+
+    private final ConcurrentHashMap<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Records the time elapsed since the given start under a timer, creating the timer on first use.
+     *
+     * @param timer The timer name, e.g. {@code parse}.
+     * @param startNanos The start time, from {@link System#nanoTime()}.
+     */
+    public void record(String timer, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        LatencyHistogram histogram = timers.get(timer);
+        if (histogram == null) {
+            histogram = timers.computeIfAbsent(timer, k -> new LatencyHistogram());
+        }
+        histogram.record(elapsed);
+    }
+
+    /**
+     * Counts a command that failed with an error message.
+     */
+    public void recordError() {
+        errors.increment();
+    }
+
+    /**
+     * Returns the name of the timer for executing commands of the given type, e.g. {@code execute.find}.
+     *
+     * @param command The command.
+     * @return The timer name.
+     */
+    public static String executeTimer(Command command) {
+        return EXECUTE_TIMERS.get(command.getClass());
+    }
+
+    /**
+     * Formats every timer as a line of a table, with a heading line first, sorted by timer name.
+     *
+     * @return The lines, without line separators.
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(Locale.ROOT, "%-22s %9s %10s %10s %10s %10s",
+                "timer (us)", "count", "mean", "median", "p99", "max"));
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(timers).entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            lines.add(String.format(Locale.ROOT, "%-22s %9d %10.1f %10.1f %10.1f %10.1f", entry.getKey(),
+                    h.count(), micros(h.mean()), micros(h.percentile(50)), micros(h.percentile(99)),
+                    micros(h.max())));
+        }
+        return lines;
+    }
+
+    /**
+     * Makes the figures readable by JMX clients under {@code octoplush:type=Stats}.
+     *
+     * @throws OctoplushException If another instance is already registered.
+     */
+    public void registerMBean() throws OctoplushException {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new OctoplushException("Could not publish the statistics over JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the figures to the given stream when the JVM exits.
+     *
+     * @param out The stream to print to, e.g. {@link System#err}.
+     */
+    public void printOnExit(PrintStream out) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (String line : describe()) {
+                out.println(line);
+            }
+            out.println("errors: " + getErrorCount());
+            out.flush();
+        }, "octoplush-stats"));
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return collect(LatencyHistogram::count);
+    }
+
+    @Override
+    public Map<String, Double> getMeanMicros() {
+        return collectMicros(LatencyHistogram::mean);
+    }
+
+    @Override
+    public Map<String, Double> getMedianMicros() {
+        return collectMicros(h -> h.percentile(50));
+    }
+
+    @Override
+    public Map<String, Double> getP99Micros() {
+        return collectMicros(h -> h.percentile(99));
+    }
+
+    @Override
+    public Map<String, Double> getMaxMicros() {
+        return collectMicros(LatencyHistogram::max);
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : timers.values()) {
+            histogram.reset();
+        }
+        errors.reset();
+    }
+
+    private Map<String, Long> collect(ToLongFunction<LatencyHistogram> figure) {
+        Map<String, Long> values = new TreeMap<>();
+        timers.forEach((name, histogram) -> values.put(name, figure.applyAsLong(histogram)));
+        return values;
+    }
+
+    private Map<String, Double> collectMicros(ToLongFunction<LatencyHistogram> figure) {
+        Map<String, Double> values = new TreeMap<>();
+        timers.forEach((name, histogram) -> values.put(name, micros(figure.applyAsLong(histogram))));
+        return values;
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
@@ -0,0 +1,57 @@
+package octoplush;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link Stats}, for JMX clients such as JConsole.
+ * Each map is keyed by timer name, e.g. {@code parse}, {@code execute.add} or {@code storage.load};
+ * durations are in microseconds.
+ */
+public interface StatsMXBean {
+    /**
+     * Returns the number of times each timer was recorded.
+     *
+     * @return The counts by timer name.
+     */
+    Map<String, Long> getCounts();
+
+    /**
+     * Returns the mean duration of each timer.
+     *
+     * @return The means in microseconds by timer name.
+     */
+    Map<String, Double> getMeanMicros();
+
+    /**
+     * Returns the median duration of each timer.
+     *
+     * @return The medians in microseconds by timer name.
+     */
+    Map<String, Double> getMedianMicros();
+
+    /**
+     * Returns the 99th percentile duration of each timer.
+     *
+     * @return The 99th percentiles in microseconds by timer name.
+     */
+    Map<String, Double> getP99Micros();
+
+    /**
+     * Returns the longest duration of each timer.
+     *
+     * @return The maximums in microseconds by timer name.
+     */
+    Map<String, Double> getMaxMicros();
+
+    /**
+     * Returns the number of commands that failed with an error message.
+     *
+     * @return The error count.
+     */
+    long getErrorCount();
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    void reset();
+}
@@ -0,0 +1,90 @@
+package octoplush;
+
+import octoplush.task.Task;
+
+/**
+ * One change made to a task list: a task added, deleted, marked or unmarked.
+ * Changes are kept by the list's history so they can be undone and redone.
+ */
+public class TaskChange {
+    /**
+     * The kinds of change.
+     */
+    public enum Kind {
+        ADDED, DELETED, MARKED, UNMARKED
+    }
+
+    private final Kind kind;
+    private final Task task;
+    private final boolean wasDone;
+    private final boolean isArchived;
+
+    /**
+     * Creates a change.
+     *
+     * @param kind What happened to the task.
+     * @param task The task, which keeps its id across the change.
+     * @param wasDone Whether the task was done before a {@code MARKED} or {@code UNMARKED} change.
+     */
+    TaskChange(Kind kind, Task task, boolean wasDone) {
+        this(kind, task, wasDone, false);
+    }
+
+    /**
+     * Creates a change that may move a task into or out of the archive.
+     *
+     * @param kind What happened to the task.
+     * @param task The task, which keeps its id across the change.
+     * @param wasDone Whether the task was done before a {@code MARKED} or {@code UNMARKED} change.
+     * @param isArchived Whether a {@code DELETED} task was archived, or an {@code ADDED} one taken back
+     *     out of the archive.
+     */
+    TaskChange(Kind kind, Task task, boolean wasDone, boolean isArchived) {
+        this.kind = kind;
+        this.task = task;
+        this.wasDone = wasDone;
+        this.isArchived = isArchived;
+    }
+
+    /**
+     * Returns what happened to the task.
+     *
+     * @return The kind of change.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the task that changed.
+     *
+     * @return The task.
+     */
+    public Task getTask() {
+        return task;
+    }
+
+    /**
+     * Checks whether the task was moved into the archive, for a {@code DELETED} change, or taken back out
+     * of it, for an {@code ADDED} one.
+     *
+     * @return Whether the change moves the task into or out of the archive.
+     */
+    public boolean isArchived() {
+        return isArchived;
+    }
+
+    /**
+     * Returns the change that reverts this one.
+     */
+    TaskChange inverse() {
+        switch (kind) {
+        case ADDED:
+            return new TaskChange(Kind.DELETED, task, wasDone, isArchived);
+        case DELETED:
+            return new TaskChange(Kind.ADDED, task, wasDone, isArchived);
+        default:
+            return new TaskChange(wasDone ? Kind.MARKED : Kind.UNMARKED, task, kind == Kind.MARKED);
+        }
+    }
+}
@@ -2,19 +2,44 @@ package octoplush;
 
 import octoplush.task.Task;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Manages a list of tasks with operations to add, delete, mark, and retrieve tasks.
+ *
+ * <p>Each task keeps its id while it is in the list. Ids increase along the list, so a task is found by
+ * id with a binary search over a column of ids, in O(log N), and deleting a task closes the gap it
+ * leaves, in O(N). Tombstoned places would make both constant time, but the numbers shown to the user
+ * and the records a binary task file is patched in place by are positions in the list, so every one of
+ * them would have to skip the tombstones.</p>
  */
 public class TaskList {
-    private final ArrayList<Task> tasks;
+    private static final String OR_SEPARATOR = "\\s+/or\\s+";
+    private static final int PARALLEL_QUERY_THRESHOLD = 10_000;
+    private static final int REINDEX_THRESHOLD = 1_000;
+
+    private final TaskStore tasks;
+    private final IntList ids;
+    private int nextId;
+    private KeywordIndex keywordIndex;
+    private TimeIndex timeIndex;
+    private ArrayList<Runnable> undoLog;
+    private int batchNextId;
+    private History history;
+    private Consumer<TaskChange> changeListener;
 
     /**
      * Creates an empty task list.
      */
     public TaskList() {
-        this.tasks = new ArrayList<>();
+        this(new ArrayList<>());
     }
 
     /**
@@ -23,16 +48,102 @@ public class TaskList {
      * @param tasks The initial list of tasks.
      */
     public TaskList(ArrayList<Task> tasks) {
+        this(new ArrayTaskStore(tasks));
+    }
+
+    /**
+     * Creates a task list backed by the given store, e.g. a {@link LazyTaskStore} over a task file.
+     *
+     * @param tasks The store holding the tasks.
+     */
+    TaskList(TaskStore tasks) {
+        this(tasks, 1);
+    }
+
+    /**
+     * Creates a task list backed by the given store that hands out ids from at least {@code nextId},
+     * so ids of tasks deleted before the store was saved are not reused.
+     *
+     * @param tasks The store holding the tasks.
+     * @param nextId The lowest id to give the next added task.
+     */
+    TaskList(TaskStore tasks, int nextId) {
         this.tasks = tasks;
+        this.ids = new IntList(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            ids.add(tasks.idAt(i));
+        }
+        this.nextId = Math.max(nextId, ids.isEmpty() ? 1 : ids.get(ids.size() - 1) + 1);
     }
 
     /**
-     * Adds a task to the list.
+     * Adds a task to the list, giving it a new id unless it already has one higher than any in the list.
      *
      * @param task The task to add.
      */
     public void add(Task task) {
+        int id = task.getId() >= nextId ? task.getId() : nextId;
+        task.setId(id);
+        nextId = id + 1;
         tasks.add(task);
+        ids.add(id);
+        index(id, task);
+        if (undoLog != null) {
+            undoLog.add(() -> remove(position(id), false));
+        }
+        record(TaskChange.Kind.ADDED, task, false);
+    }
+
+    private void index(int id, Task task) {
+        if (keywordIndex != null) {
+            keywordIndex.add(id, task.getDescription());
+        }
+        if (timeIndex != null) {
+            timeIndex.add(id, task);
+        }
+    }
+
+    private void restore(Task task, boolean isArchived) {
+        int id = task.getId();
+        int index = -ids.binarySearch(id) - 1;
+        tasks.insert(index, task);
+        ids.insert(index, id);
+        index(id, task);
+        if (undoLog != null) {
+            undoLog.add(() -> remove(position(id), isArchived));
+        }
+        record(TaskChange.Kind.ADDED, task, false, isArchived);
+    }
+
+    /**
+     * Puts a deleted task back at its place in the list, keeping its id, as when a deletion is undone.
+     *
+     * @param task The task to put back.
+     * @return false if the list already has a task with that id.
+     */
+    boolean putBack(Task task) {
+        if (ids.binarySearch(task.getId()) >= 0) {
+            return false;
+        }
+        restore(task, false);
+        return true;
+    }
+
+    private void record(TaskChange.Kind kind, Task task, boolean wasDone) {
+        record(kind, task, wasDone, false);
+    }
+
+    private void record(TaskChange.Kind kind, Task task, boolean wasDone, boolean isArchived) {
+        if (history == null && changeListener == null) {
+            return;
+        }
+        TaskChange change = new TaskChange(kind, task, wasDone, isArchived);
+        if (history != null) {
+            history.record(change);
+        }
+        if (changeListener != null) {
+            changeListener.accept(change);
+        }
     }
 
     /**
@@ -43,10 +154,81 @@ public class TaskList {
      * @throws OctoplushException If the index is invalid.
      */
     public Task delete(int index) {
-        if (index < 0 || index >= tasks.size()) {
-            throw new OctoplushException("Invalid task number: " + (index + 1));
+        checkIndex(index);
+        return remove(index, false);
+    }
+
+    private Task remove(int index, boolean isArchived) {
+        Task task = tasks.remove(index);
+        if (keywordIndex != null) {
+            keywordIndex.remove(ids.get(index), task.getDescription());
+        }
+        if (timeIndex != null) {
+            timeIndex.remove(ids.get(index), task);
+        }
+        ids.removeAt(index);
+        if (undoLog != null) {
+            undoLog.add(() -> restore(task, isArchived));
+        }
+        record(TaskChange.Kind.DELETED, task, false, isArchived);
+        return task;
+    }
+
+    /**
+     * Deletes the tasks at the given indexes in a single pass over the list.
+     * Deleting many tasks drops the keyword and time indexes, which are rebuilt on the next search,
+     * instead of updating them task by task.
+     *
+     * @param indexes The 0-based indexes of the tasks to delete, in ascending order without repeats.
+     * @return The deleted tasks, in list order.
+     * @throws OctoplushException If an index is invalid; nothing is deleted then.
+     */
+    public List<Task> deleteAll(int[] indexes) {
+        return removeAll(indexes, false);
+    }
+
+    /**
+     * Deletes the tasks at the given indexes, which have been archived, like {@link #deleteAll(int[])}.
+     * The changes are marked as archived, so undoing them and redoing them can take the tasks back out
+     * of the archive and put them in again.
+     *
+     * @param indexes The 0-based indexes of the tasks to delete, in ascending order without repeats.
+     * @return The deleted tasks, in list order.
+     * @throws OctoplushException If an index is invalid; nothing is deleted then.
+     */
+    public List<Task> archiveAll(int[] indexes) {
+        return removeAll(indexes, true);
+    }
+
+    private List<Task> removeAll(int[] indexes, boolean isArchived) {
+        for (int index : indexes) {
+            checkIndex(index);
+        }
+        List<Task> removed = tasks.removeAll(indexes);
+        int[] removedIds = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            removedIds[i] = ids.get(indexes[i]);
+        }
+        ids.removeAll(indexes);
+
+        if (indexes.length >= REINDEX_THRESHOLD) {
+            keywordIndex = null;
+            timeIndex = null;
         }
-        return tasks.remove(index);
+        for (int i = 0; i < removed.size(); i++) {
+            Task task = removed.get(i);
+            if (keywordIndex != null) {
+                keywordIndex.remove(removedIds[i], task.getDescription());
+            }
+            if (timeIndex != null) {
+                timeIndex.remove(removedIds[i], task);
+            }
+            if (undoLog != null) {
+                undoLog.add(() -> restore(task, isArchived));
+            }
+            record(TaskChange.Kind.DELETED, task, false, isArchived);
+        }
+        return removed;
     }
 
     /**
@@ -57,9 +239,7 @@ public class TaskList {
      * @throws OctoplushException If the index is invalid.
      */
     public Task get(int index) {
-        if (index < 0 || index >= tasks.size()) {
-            throw new OctoplushException("Invalid task number: " + (index + 1));
-        }
+        checkIndex(index);
         return tasks.get(index);
     }
 
@@ -73,12 +253,21 @@ public class TaskList {
     }
 
     /**
-     * Gets the underlying ArrayList of tasks.
+     * Gets a read-only view of the tasks.
      *
-     * @return The ArrayList containing all tasks.
+     * @return The list containing all tasks.
      */
-    public ArrayList<Task> getTasks() {
-        return tasks;
+    public List<Task> getTasks() {
+        return tasks.view();
+    }
+
+    /**
+     * Gets a read-only copy of the tasks that later additions and deletions do not affect.
+     *
+     * @return The copy of the list.
+     */
+    List<Task> snapshot() {
+        return tasks.snapshot();
     }
 
     /**
@@ -88,7 +277,7 @@ public class TaskList {
      * @throws OctoplushException If the index is invalid.
      */
     public void markTask(int index) {
-        get(index).mark();
+        setDone(index, true);
     }
 
     /**
@@ -98,6 +287,435 @@ public class TaskList {
      * @throws OctoplushException If the index is invalid.
      */
     public void unmarkTask(int index) {
-        get(index).unmark();
+        setDone(index, false);
+    }
+
+    /**
+     * Marks the tasks at the given indexes as done or not done. Tasks that already are are left alone,
+     * so they are neither reported as changed nor undone.
+     *
+     * @param indexes The 0-based indexes of the tasks.
+     * @param isDone Whether the tasks are now done.
+     * @return The indexes of the tasks that were changed, in the given order.
+     * @throws OctoplushException If an index is invalid; nothing is changed then.
+     */
+    public int[] setDoneAll(int[] indexes, boolean isDone) {
+        for (int index : indexes) {
+            checkIndex(index);
+        }
+        int[] changed = new int[indexes.length];
+        int count = 0;
+        for (int index : indexes) {
+            if (tasks.get(index).isDone() != isDone) {
+                setDone(index, isDone);
+                changed[count++] = index;
+            }
+        }
+        return count == changed.length ? changed : Arrays.copyOf(changed, count);
+    }
+
+    private void setDone(int index, boolean isDone) {
+        checkIndex(index);
+        boolean wasDone = tasks.get(index).isDone();
+        if (undoLog != null) {
+            int id = ids.get(index);
+            undoLog.add(() -> setDone(position(id), wasDone));
+        }
+        tasks.setDone(index, isDone);
+        record(isDone ? TaskChange.Kind.MARKED : TaskChange.Kind.UNMARKED, tasks.get(index), wasDone);
+    }
+
+    /**
+     * Reports every change made to the list from now on, including those made by undo, redo and
+     * rolling back a batch, to the given listener. The listener is called on the thread making the
+     * change, once the list has been updated.
+     *
+     * @param listener The listener, or null to stop reporting changes.
+     */
+    public void setChangeListener(Consumer<TaskChange> listener) {
+        changeListener = listener;
+    }
+
+    /**
+     * Starts keeping a history of changes so they can be undone with {@link #undo()}.
+     * Changes are grouped into steps by {@link #checkpoint()}.
+     *
+     * @param depth The number of steps to keep.
+     */
+    public void keepHistory(int depth) {
+        history = new History(depth);
+    }
+
+    /**
+     * Ends the current step of the history, so the changes made since the last checkpoint are
+     * undone together. Call this after each command.
+     */
+    public void checkpoint() {
+        if (history != null) {
+            history.checkpoint();
+        }
+    }
+
+    /**
+     * Reverts the newest step of the history, newest change first.
+     *
+     * @return The changes made to revert it, in the order they were made.
+     * @throws OctoplushException If there is nothing to undo.
+     */
+    public List<TaskChange> undo() {
+        List<TaskChange> step = history == null ? null : history.takeUndo();
+        if (step == null) {
+            throw new OctoplushException("There is nothing to undo.");
+        }
+        ArrayList<TaskChange> applied = new ArrayList<>(step.size());
+        for (int i = step.size() - 1; i >= 0; i--) {
+            applied.add(apply(step.get(i).inverse()));
+        }
+        return applied;
+    }
+
+    /**
+     * Makes the changes of the most recently undone step again.
+     *
+     * @return The changes made, in the order they were made.
+     * @throws OctoplushException If nothing has been undone since the last change.
+     */
+    public List<TaskChange> redo() {
+        List<TaskChange> step = history == null ? null : history.takeRedo();
+        if (step == null) {
+            throw new OctoplushException("There is nothing to redo.");
+        }
+        ArrayList<TaskChange> applied = new ArrayList<>(step.size());
+        for (TaskChange change : step) {
+            applied.add(apply(change));
+        }
+        return applied;
+    }
+
+    private TaskChange apply(TaskChange change) {
+        history.setPaused(true);
+        try {
+            Task task = change.getTask();
+            switch (change.getKind()) {
+            case ADDED:
+                restore(task, change.isArchived());
+                break;
+            case DELETED:
+                remove(position(task.getId()), change.isArchived());
+                break;
+            default:
+                setDone(position(task.getId()), change.getKind() == TaskChange.Kind.MARKED);
+                break;
+            }
+            return change;
+        } finally {
+            history.setPaused(false);
+        }
+    }
+
+    /**
+     * Starts recording changes so they can be undone with {@link #rollbackBatch()}.
+     *
+     * @throws OctoplushException If a batch is already open.
+     */
+    public void beginBatch() {
+        if (undoLog != null) {
+            throw new OctoplushException("A batch is already open. Use 'commit' to save it first.");
+        }
+        undoLog = new ArrayList<>();
+        batchNextId = nextId;
+    }
+
+    /**
+     * Keeps the changes made since {@link #beginBatch()} and stops recording them.
+     */
+    public void endBatch() {
+        undoLog = null;
+    }
+
+    /**
+     * Undoes every change made since {@link #beginBatch()}, newest first, and stops recording.
+     * Ids handed out during the batch are given out again.
+     */
+    public void rollbackBatch() {
+        if (undoLog == null) {
+            return;
+        }
+        ArrayList<Runnable> changes = undoLog;
+        undoLog = null;
+        if (history != null) {
+            history.setPaused(true);
+        }
+        for (int i = changes.size() - 1; i >= 0; i--) {
+            changes.get(i).run();
+        }
+        nextId = batchNextId;
+        if (history != null) {
+            history.clear(); // Its steps may describe changes that no longer happened
+            history.setPaused(false);
+        }
+    }
+
+    /**
+     * Checks whether changes are being recorded in a batch.
+     *
+     * @return true if a batch is open.
+     */
+    public boolean isInBatch() {
+        return undoLog != null;
+    }
+
+    /**
+     * Finds tasks whose descriptions contain all the given words, in list order.
+     * Each word matches as a substring within a word of the description, or as a prefix if it ends with
+     * {@code *}. Groups of words separated by {@code /or} are alternatives.
+     * Searches are answered from a keyword index built on first use; words with punctuation,
+     * which the index cannot answer, fall back to scanning the descriptions.
+     *
+     * @param query The words to search for.
+     * @return The matching tasks.
+     */
+    public List<Task> find(String query) {
+        int[] matches = matchKeywords(query);
+        ArrayList<Task> found = new ArrayList<>(matches.length);
+        for (int id : matches) {
+            found.add(taskById(id));
+        }
+        return found;
+    }
+
+    /**
+     * Finds the tasks meeting every condition of a query, in list order and with their list numbers.
+     * Keywords narrow the candidates through the keyword index; the remaining conditions are checked
+     * against a snapshot of the candidates, split across threads once there are
+     * {@value #PARALLEL_QUERY_THRESHOLD} or more of them.
+     *
+     * @param query The conditions to meet.
+     * @return The matching tasks, numbered by their position in the list.
+     */
+    public List<NumberedTask> query(TaskQuery query) {
+        int[] candidates;
+        if (query.keywords() == null) {
+            candidates = null;
+        } else {
+            candidates = matchKeywords(query.keywords());
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = ids.binarySearch(candidates[i]);
+            }
+        }
+
+        int count = candidates == null ? tasks.size() : candidates.length;
+        if (!query.hasFilter() || count < PARALLEL_QUERY_THRESHOLD) {
+            ArrayList<NumberedTask> found = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int index = candidates == null ? i : candidates[i];
+                Task task = tasks.get(index);
+                if (query.test(task)) {
+                    found.add(new NumberedTask(index + 1, task));
+                }
+            }
+            return found;
+        }
+
+        // Worker threads read a snapshot, as stores may change internal state even on reads
+        return select(tasks.snapshot(), candidates, query::test);
+    }
+
+    /**
+     * Selects the tasks of a read-only list that meet a condition, with their numbers in the list,
+     * splitting the checks across threads once there are {@value #PARALLEL_QUERY_THRESHOLD} or more.
+     *
+     * @param all The list, which must be safe to read from several threads.
+     * @param candidates The indexes to check in ascending order, or null to check every task.
+     * @param condition The condition to meet.
+     * @return The tasks meeting the condition, in list order.
+     */
+    static List<NumberedTask> select(List<Task> all, int[] candidates, Predicate<Task> condition) {
+        IntStream indexes = candidates == null ? IntStream.range(0, all.size()) : Arrays.stream(candidates);
+        if ((candidates == null ? all.size() : candidates.length) >= PARALLEL_QUERY_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        return indexes.filter(index -> condition.test(all.get(index)))
+                .mapToObj(index -> new NumberedTask(index + 1, all.get(index)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns a check of whether a description matches a keyword query, giving the same answers as the
+     * keyword index, for lists that are searched without one.
+     *
+     * @param query The keywords, as accepted by {@link #find(String)}.
+     * @return The check.
+     */
+    static Predicate<String> keywordMatcher(String query) {
+        String[] groups = query.trim().split(OR_SEPARATOR);
+        String[][] words = new String[groups.length][];
+        for (int i = 0; i < groups.length; i++) {
+            words[i] = groups[i].trim().toLowerCase().split("\\s+");
+        }
+        return description -> {
+            String lower = description.toLowerCase();
+            String[] tokens = null;
+            for (String[] group : words) {
+                boolean isMatch = true;
+                for (int i = 0; i < group.length && isMatch; i++) {
+                    String prefix = group[i].substring(0, Math.max(group[i].length() - 1, 0));
+                    if (group[i].endsWith("*") && KeywordIndex.isIndexable(prefix)) {
+                        tokens = tokens == null ? KeywordIndex.tokenize(description) : tokens;
+                        isMatch = startsAnyWord(tokens, prefix);
+                    } else {
+                        isMatch = lower.contains(group[i]); // Letters and digits always lie within one word
+                    }
+                }
+                if (isMatch) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private static boolean startsAnyWord(String[] tokens, String prefix) {
+        for (String token : tokens) {
+            if (token.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the ids of the tasks matching a keyword query, in ascending order.
+     */
+    private int[] matchKeywords(String query) {
+        if (keywordIndex == null) {
+            buildKeywordIndex();
+        }
+
+        int[] matches = new int[0];
+        for (String group : query.trim().split(OR_SEPARATOR)) {
+            int[] groupMatches = null;
+            for (String word : group.trim().split("\\s+")) {
+                int[] wordMatches = matchWord(word.toLowerCase());
+                groupMatches = groupMatches == null ? wordMatches : KeywordIndex.intersect(groupMatches, wordMatches);
+            }
+            matches = KeywordIndex.union(matches, groupMatches);
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the deadlines due and the events taking place within a period, ordered by time.
+     * Searches are answered from a time index built on first use.
+     *
+     * @param from The start of the period, inclusive.
+     * @param to The end of the period, inclusive.
+     * @return The matching tasks.
+     */
+    public List<Task> findBetween(LocalDateTime from, LocalDateTime to) {
+        if (timeIndex == null) {
+            timeIndex = new TimeIndex();
+            List<Task> all = tasks.snapshot();
+            for (int i = 0; i < all.size(); i++) {
+                timeIndex.add(ids.get(i), all.get(i));
+            }
+        }
+        return timeIndex.between(from, to, this::taskById);
+    }
+
+    /**
+     * Finds the current position of the task with the given id.
+     * Ids increase along the list, so this is a binary search over the id column.
+     *
+     * @param id The task id.
+     * @return The 0-based index of the task.
+     * @throws OctoplushException If there is no task with that id.
+     */
+    public int indexOf(int id) {
+        return position(id);
+    }
+
+    /**
+     * Checks whether the task with the given id is in the list.
+     *
+     * @param id The task id.
+     * @return true if the list has a task with that id.
+     */
+    public boolean hasId(int id) {
+        return ids.binarySearch(id) >= 0;
+    }
+
+    /**
+     * Gets the task with the given id.
+     *
+     * @param id The task id.
+     * @return The task, or null if there is no task with that id.
+     */
+    public Task findById(int id) {
+        int index = ids.binarySearch(id);
+        return index < 0 ? null : tasks.get(index);
+    }
+
+    private int position(int id) {
+        int index = ids.binarySearch(id);
+        if (index < 0) {
+            throw new OctoplushException("There is no task #" + id + ".");
+        }
+        return index;
+    }
+
+    /**
+     * Returns the id of the task at the given index without loading the task.
+     */
+    int idAt(int index) {
+        checkIndex(index);
+        return ids.get(index);
+    }
+
+    /**
+     * Returns the next id that will be given to an added task.
+     */
+    int nextId() {
+        return nextId;
+    }
+
+    /**
+     * Returns the store holding the tasks, for a list taking it over.
+     */
+    TaskStore store() {
+        return tasks;
+    }
+
+    private Task taskById(int id) {
+        return tasks.get(ids.binarySearch(id));
+    }
+
+    private int[] matchWord(String word) {
+        if (word.endsWith("*") && KeywordIndex.isIndexable(word.substring(0, word.length() - 1))) {
+            return keywordIndex.matchPrefix(word.substring(0, word.length() - 1));
+        } else if (KeywordIndex.isIndexable(word)) {
+            return keywordIndex.matchWithinWord(word);
+        }
+
+        IntList matches = new IntList();
+        for (int i = 0; i < tasks.size(); i++) {
+            if (tasks.descriptionAt(i).toLowerCase().contains(word)) {
+                matches.add(ids.get(i));
+            }
+        }
+        return matches.toArray();
+    }
+
+    private void buildKeywordIndex() {
+        keywordIndex = new KeywordIndex();
+        for (int i = 0; i < tasks.size(); i++) {
+            keywordIndex.add(ids.get(i), tasks.descriptionAt(i));
+        }
+    }
+
+    void checkIndex(int index) {
+        if (index < 0 || index >= tasks.size()) {
+            throw new OctoplushException("Invalid task number: " + (index + 1));
+        }
     }
 }
@@ -0,0 +1,136 @@
+package octoplush;
+
+import octoplush.task.Deadline;
+import octoplush.task.Event;
+import octoplush.task.Task;
+
+import java.time.LocalDateTime;
+import java.util.function.Predicate;
+
+/**
+ * Conditions that tasks must all meet to be selected by {@link TaskList#query(TaskQuery)}.
+ * Keywords use the syntax of {@link TaskList#find(String)} and are answered from the keyword index;
+ * every other condition is checked against each task.
+ */
+public class TaskQuery {
+    private String keywords;
+    private Predicate<Task> filter;
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    /**
+     * Creates a query that selects every task.
+     */
+    public TaskQuery() {
+    }
+
+    /**
+     * Keeps only tasks matching the given keywords.
+     *
+     * @param keywords The keywords, as accepted by {@link TaskList#find(String)}.
+     * @return This query.
+     */
+    public TaskQuery containing(String keywords) {
+        this.keywords = keywords;
+        return this;
+    }
+
+    /**
+     * Keeps only tasks that are done, or only those that are not.
+     *
+     * @param isDone Whether the selected tasks must be done.
+     * @return This query.
+     */
+    public TaskQuery done(boolean isDone) {
+        return matching(task -> task.isDone() == isDone);
+    }
+
+    /**
+     * Keeps only tasks of one type.
+     *
+     * @param tag The type tag: {@code T}, {@code D} or {@code E}.
+     * @return This query.
+     */
+    public TaskQuery ofType(char tag) {
+        return matching(task -> task.tag() == tag);
+    }
+
+    /**
+     * Keeps only deadlines due and events still taking place at or after the given time.
+     * A repeating task is kept if any of its occurrences is.
+     *
+     * @param from The earliest time.
+     * @return This query.
+     */
+    public TaskQuery after(LocalDateTime from) {
+        this.from = from;
+        return this;
+    }
+
+    /**
+     * Keeps only deadlines due and events starting at or before the given time.
+     * A repeating task is kept if any of its occurrences is; with {@link #after(LocalDateTime)}, the same
+     * occurrence must meet both conditions.
+     *
+     * @param to The latest time.
+     * @return This query.
+     */
+    public TaskQuery before(LocalDateTime to) {
+        this.to = to;
+        return this;
+    }
+
+    /**
+     * Keeps only tasks accepted by the given condition, which may be called from several threads at once.
+     *
+     * @param condition The condition.
+     * @return This query.
+     */
+    public TaskQuery matching(Predicate<Task> condition) {
+        filter = filter == null ? condition : filter.and(condition);
+        return this;
+    }
+
+    /**
+     * Returns the keywords to match, or null if any description will do.
+     */
+    String keywords() {
+        return keywords;
+    }
+
+    /**
+     * Checks whether the query has conditions besides its keywords.
+     */
+    boolean hasFilter() {
+        return filter != null || from != null || to != null;
+    }
+
+    /**
+     * Checks a task against every condition besides the keywords.
+     */
+    boolean test(Task task) {
+        return (filter == null || filter.test(task)) && isInPeriod(task);
+    }
+
+    /**
+     * Returns a condition checking a task against the whole query, matching the keywords against its
+     * description, for tasks that are not in the keyword index.
+     */
+    Predicate<Task> asPredicate() {
+        if (keywords == null) {
+            return this::test;
+        }
+        Predicate<String> matcher = TaskList.keywordMatcher(keywords);
+        return task -> matcher.test(task.getDescription()) && test(task);
+    }
+
+    private boolean isInPeriod(Task task) {
+        if (from == null && to == null) {
+            return true;
+        }
+        if (task instanceof Deadline d) {
+            return d.occursBetween(from, to);
+        }
+        return task instanceof Event e && e.occursBetween(from, to);
+    }
+}
@@ -0,0 +1,49 @@
+package octoplush;
+
+/**
+ * Refers to a task either by its current position in the list or by its stable id.
+ */
+public class TaskRef {
+    private final int number;
+    private final boolean isId;
+
+    private TaskRef(int number, boolean isId) {
+        this.number = number;
+        this.isId = isId;
+    }
+
+    /**
+     * Creates a reference to the task at a position in the list.
+     *
+     * @param index The 0-based index of the task.
+     * @return The reference.
+     */
+    public static TaskRef ofIndex(int index) {
+        return new TaskRef(index, false);
+    }
+
+    /**
+     * Creates a reference to the task with the given id.
+     *
+     * @param id The task id.
+     * @return The reference.
+     */
+    public static TaskRef ofId(int id) {
+        return new TaskRef(id, true);
+    }
+
+    /**
+     * Finds the current position of the referenced task.
+     *
+     * @param tasks The task list to look in.
+     * @return The 0-based index of the task.
+     * @throws OctoplushException If there is no such task.
+     */
+    public int resolve(TaskList tasks) throws OctoplushException {
+        if (isId) {
+            return tasks.indexOf(number);
+        }
+        tasks.checkIndex(number);
+        return number;
+    }
+}
@@ -0,0 +1,88 @@
+package octoplush;
+
+import octoplush.task.Task;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A set of tasks to act on together: single tasks, ranges of list numbers and tasks meeting a condition,
+ * as in {@code mark 1,4,9-20} or {@code delete done}. Tasks picked more than once are only acted on once.
+ */
+public class TaskSelection {
+    private final List<TaskRef> refs = new ArrayList<>();
+    private final List<int[]> ranges = new ArrayList<>();
+    private Predicate<Task> filter;
+
+    /**
+     * Creates a selection of no tasks.
+     */
+    public TaskSelection() {
+    }
+
+    /**
+     * Adds one task to the selection.
+     *
+     * @param task The task.
+     * @return This selection.
+     */
+    public TaskSelection task(TaskRef task) {
+        refs.add(task);
+        return this;
+    }
+
+    /**
+     * Adds the tasks at a range of positions to the selection.
+     *
+     * @param fromIndex The 0-based index of the first task.
+     * @param toIndex The 0-based index of the last task, inclusive.
+     * @return This selection.
+     */
+    public TaskSelection range(int fromIndex, int toIndex) {
+        ranges.add(new int[] {fromIndex, toIndex});
+        return this;
+    }
+
+    /**
+     * Adds every task that is done, or every task that is not, to the selection.
+     *
+     * @param isDone Whether the tasks to add are done.
+     * @return This selection.
+     */
+    public TaskSelection done(boolean isDone) {
+        Predicate<Task> condition = task -> task.isDone() == isDone;
+        filter = filter == null ? condition : filter.or(condition);
+        return this;
+    }
+
+    /**
+     * Finds the positions of the selected tasks. Every task and range is checked first, so an
+     * invalid one means nothing is acted on.
+     *
+     * @param tasks The task list to look in.
+     * @return The 0-based indexes of the selected tasks, in ascending order.
+     * @throws OctoplushException If a task or range is not in the list.
+     */
+    public int[] resolve(TaskList tasks) throws OctoplushException {
+        BitSet selected = new BitSet(tasks.size());
+        for (TaskRef ref : refs) {
+            selected.set(ref.resolve(tasks));
+        }
+        for (int[] range : ranges) {
+            tasks.checkIndex(range[0]);
+            tasks.checkIndex(range[1]);
+            selected.set(range[0], range[1] + 1);
+        }
+        if (filter != null) {
+            List<Task> all = tasks.getTasks();
+            for (int i = 0; i < all.size(); i++) {
+                if (filter.test(all.get(i))) {
+                    selected.set(i);
+                }
+            }
+        }
+        return selected.stream().toArray();
+    }
+}
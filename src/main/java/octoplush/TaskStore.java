@@ -0,0 +1,109 @@
+package octoplush;
+
+import octoplush.task.Deadline;
+import octoplush.task.Event;
+import octoplush.task.Task;
+
+import java.util.List;
+
+/**
+ * Backing storage for the tasks in a {@link TaskList}.
+ * Indices are 0-based and have already been range-checked by the task list.
+ */
+interface TaskStore {
+    /**
+     * Returned by {@link #timeAt(int)} for a task with no time to wait for.
+     */
+    long NO_TIME = Long.MIN_VALUE;
+
+    /**
+     * Returns the number of tasks stored.
+     */
+    int size();
+
+    /**
+     * Returns the id of the task at the given index without loading the task itself.
+     * Ids increase along the store.
+     */
+    int idAt(int index);
+
+    /**
+     * Returns the task at the given index.
+     */
+    Task get(int index);
+
+    /**
+     * Returns the description of the task at the given index, for scans that need nothing else.
+     */
+    default String descriptionAt(int index) {
+        return get(index).getDescription();
+    }
+
+    /**
+     * Returns the due time of the deadline or the start of the event at the given index, that of the
+     * first occurrence if it repeats, as an epoch minute, for scans that need nothing else. Todos and
+     * tasks that are done have no time to wait for.
+     *
+     * @return The time, or {@link #NO_TIME} for a todo or a task that is done.
+     */
+    default long timeAt(int index) {
+        Task task = get(index);
+        if (task.isDone()) {
+            return NO_TIME;
+        }
+        if (task instanceof Deadline d) {
+            return BinaryTaskFormat.toEpochMinute(d.getBy());
+        }
+        return task instanceof Event e ? BinaryTaskFormat.toEpochMinute(e.getFrom()) : NO_TIME;
+    }
+
+    /**
+     * Checks whether the task at the given index repeats, for scans that need nothing else.
+     */
+    default boolean isRepeatingAt(int index) {
+        Task task = get(index);
+        if (task instanceof Deadline d) {
+            return d.getRecurrence() != null;
+        }
+        return task instanceof Event e && e.getRecurrence() != null;
+    }
+
+    /**
+     * Appends a task to the end of the store.
+     */
+    void add(Task task);
+
+    /**
+     * Inserts a task at the given index, shifting later tasks along.
+     */
+    void insert(int index, Task task);
+
+    /**
+     * Removes and returns the task at the given index.
+     */
+    Task remove(int index);
+
+    /**
+     * Removes the tasks at the given indexes in one pass, moving each remaining task at most once.
+     *
+     * @param indexes The indexes, in ascending order without repeats.
+     * @return The removed tasks, in list order.
+     */
+    List<Task> removeAll(int[] indexes);
+
+    /**
+     * Marks the task at the given index as done or not done.
+     */
+    void setDone(int index, boolean isDone);
+
+    /**
+     * Returns a read-only view of the tasks that reflects later changes to the store.
+     */
+    List<Task> view();
+
+    /**
+     * Returns a read-only copy of the tasks that is unaffected by later additions and removals,
+     * safe to read from another thread while the store keeps changing.
+     */
+    List<Task> snapshot();
+}
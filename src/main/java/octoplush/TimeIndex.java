@@ -0,0 +1,143 @@
+package octoplush;
+
+import octoplush.task.Deadline;
+import octoplush.task.Event;
+import octoplush.task.Task;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * Sorted index of deadlines by due time and events by start time, for range queries.
+ * Overlapping events are found by scanning start times back by the longest event seen,
+ * so a query only visits events that start within that distance of the window. Events longer
+ * than a day are few, so they are kept apart and checked one by one, and a single long event does
+ * not widen the scan for every query.
+ * Repeating deadlines and events are kept apart, one entry per rule, and their occurrences in the
+ * window are generated by each query.
+ */
+class TimeIndex {
+    private static final long LONG_EVENT_MINUTES = 24 * 60;
+
+    private final TreeMap<LocalDateTime, IntList> deadlines = new TreeMap<>();
+    private final TreeMap<LocalDateTime, IntList> events = new TreeMap<>();
+    private final IntList repeating = new IntList();
+    private final IntList longEvents = new IntList();
+    private long longestEventMinutes;
+
+    /**
+     * Indexes a task if it is a deadline or an event. Adding ids in ascending order is fastest.
+     */
+    void add(int id, Task task) {
+        if (isRepeating(task)) {
+            repeating.addSorted(id);
+        } else if (task instanceof Deadline d) {
+            deadlines.computeIfAbsent(d.getBy(), k -> new IntList()).addSorted(id);
+        } else if (task instanceof Event e && isLong(e)) {
+            longEvents.addSorted(id);
+        } else if (task instanceof Event e) {
+            events.computeIfAbsent(e.getFrom(), k -> new IntList()).addSorted(id);
+            longestEventMinutes = Math.max(longestEventMinutes, minutes(e));
+        }
+    }
+
+    /**
+     * Removes a task that was indexed with {@link #add(int, Task)}.
+     */
+    void remove(int id, Task task) {
+        if (isRepeating(task)) {
+            repeating.removeSorted(id);
+        } else if (task instanceof Deadline d) {
+            removeFrom(deadlines, d.getBy(), id);
+        } else if (task instanceof Event e && isLong(e)) {
+            longEvents.removeSorted(id);
+        } else if (task instanceof Event e) {
+            removeFrom(events, e.getFrom(), id);
+        }
+    }
+
+    private static boolean isLong(Event event) {
+        return minutes(event) > LONG_EVENT_MINUTES;
+    }
+
+    private static long minutes(Event event) {
+        return event.getFrom().until(event.getTo(), ChronoUnit.MINUTES);
+    }
+
+    private static boolean isRepeating(Task task) {
+        if (task instanceof Deadline d) {
+            return d.getRecurrence() != null;
+        }
+        return task instanceof Event e && e.getRecurrence() != null;
+    }
+
+    private static void removeFrom(TreeMap<LocalDateTime, IntList> map, LocalDateTime key, int id) {
+        IntList ids = map.get(key);
+        if (ids != null && ids.removeSorted(id) && ids.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * Returns the deadlines due within the window and the events overlapping it, ordered by
+     * due or start time. Repeating tasks are returned as their occurrences in the window.
+     *
+     * @param from The start of the window, inclusive.
+     * @param to The end of the window, inclusive.
+     * @param taskById Looks up an indexed task by its id.
+     * @return The matching tasks.
+     */
+    ArrayList<Task> between(LocalDateTime from, LocalDateTime to, IntFunction<Task> taskById) {
+        ArrayList<Task> found = new ArrayList<>();
+        if (from.isAfter(to)) {
+            return found;
+        }
+
+        TreeMap<LocalDateTime, ArrayList<Task>> byTime = new TreeMap<>();
+        for (Map.Entry<LocalDateTime, IntList> entry : deadlines.subMap(from, true, to, true).entrySet()) {
+            collect(byTime, entry.getKey(), entry.getValue(), taskById, null);
+        }
+        LocalDateTime earliestStart = from.minusMinutes(longestEventMinutes);
+        for (Map.Entry<LocalDateTime, IntList> entry : events.subMap(earliestStart, true, to, true).entrySet()) {
+            collect(byTime, entry.getKey(), entry.getValue(), taskById, from);
+        }
+        for (int i = 0; i < longEvents.size(); i++) {
+            Event event = (Event) taskById.apply(longEvents.get(i));
+            if (!event.getFrom().isAfter(to) && !event.getTo().isBefore(from)) {
+                byTime.computeIfAbsent(event.getFrom(), k -> new ArrayList<>()).add(event);
+            }
+        }
+        for (int i = 0; i < repeating.size(); i++) {
+            Task task = taskById.apply(repeating.get(i));
+            if (task instanceof Deadline d) {
+                for (Deadline occurrence : d.occurrencesBetween(from, to)) {
+                    byTime.computeIfAbsent(occurrence.getBy(), k -> new ArrayList<>()).add(occurrence);
+                }
+            } else {
+                for (Event occurrence : ((Event) task).occurrencesBetween(from, to)) {
+                    byTime.computeIfAbsent(occurrence.getFrom(), k -> new ArrayList<>()).add(occurrence);
+                }
+            }
+        }
+
+        for (ArrayList<Task> tasks : byTime.values()) {
+            found.addAll(tasks);
+        }
+        return found;
+    }
+
+    private static void collect(TreeMap<LocalDateTime, ArrayList<Task>> byTime, LocalDateTime time, IntList ids,
+            IntFunction<Task> taskById, LocalDateTime mustEndFrom) {
+        for (int i = 0; i < ids.size(); i++) {
+            Task task = taskById.apply(ids.get(i));
+            if (mustEndFrom != null && ((Event) task).getTo().isBefore(mustEndFrom)) {
+                continue; // Event ended before the window
+            }
+            byTime.computeIfAbsent(time, k -> new ArrayList<>()).add(task);
+        }
+    }
+}
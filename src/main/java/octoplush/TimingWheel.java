@@ -0,0 +1,274 @@
+package octoplush;
+
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel that holds one timer per id, at minute resolution.
+ *
+ * <p>Each of the {@value #LEVELS} levels has {@value #SLOTS} slots; a slot on level 0 spans one minute
+ * and a slot on each level above spans {@value #SLOTS} slots of the level below. A timer sits in a
+ * doubly linked list on the lowest level whose span still separates it from the current minute, so
+ * adding and cancelling one takes constant time however many timers there are. When the clock
+ * reaches a slot on a higher level, its timers move down a level, and each timer fires from level 0
+ * in the minute it is due. Stretches of time with no timers on the lower levels are skipped over a
+ * whole slot at a time, so a clock that jumps ahead does not cost one step per minute.</p>
+ *
+ * <p>A timer holds nothing but its id and due minute, so the wheel stays small however large the
+ * values the ids stand for. The wheel is not thread-safe.</p>
+ */
+class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 6;
+    private static final int OVERDUE = -1;
+    private static final int OVERFLOW = -2;
+
+    private final Timer[] slots;
+    private final int[] levelSizes = new int[LEVELS];
+    private final HashMap<Integer, Timer> timers = new HashMap<>();
+    private Timer overdue; // Added already due, fired on the next advance
+    private Timer overflow; // Due beyond the top level's span
+    private long now;
+
+    /**
+     * A timer for one id.
+     */
+    static final class Timer {
+        private final int id;
+        private final long minute;
+        private Timer prev;
+        private Timer next;
+        private int slot; // Index into the slots, or OVERDUE or OVERFLOW
+
+        private Timer(int id, long minute) {
+            this.id = id;
+            this.minute = minute;
+        }
+
+        int id() {
+            return id;
+        }
+
+        long minute() {
+            return minute;
+        }
+    }
+
+    /**
+     * Creates an empty wheel.
+     *
+     * @param now The current minute; timers due at or before it fire on the next advance.
+     */
+    TimingWheel(long now) {
+        this.slots = new Timer[LEVELS * SLOTS];
+        this.now = now;
+    }
+
+    /**
+     * Returns the minute the wheel has advanced to.
+     */
+    long now() {
+        return now;
+    }
+
+    /**
+     * Returns the number of timers waiting to fire.
+     */
+    int size() {
+        return timers.size();
+    }
+
+    /**
+     * Sets the timer for an id, replacing any timer it already had.
+     *
+     * @param id The id.
+     * @param minute The minute the timer is due, which may already have passed.
+     */
+    void schedule(int id, long minute) {
+        cancel(id);
+        Timer timer = new Timer(id, minute);
+        timers.put(id, timer);
+        if (minute <= now) {
+            link(timer, OVERDUE);
+        } else {
+            place(timer);
+        }
+    }
+
+    /**
+     * Cancels the timer for an id.
+     *
+     * @param id The id.
+     * @return true if the id had a timer.
+     */
+    boolean cancel(int id) {
+        Timer timer = timers.remove(id);
+        if (timer == null) {
+            return false;
+        }
+        unlink(timer);
+        return true;
+    }
+
+    /**
+     * Moves the wheel forward to the given minute, firing every timer due by then in order of
+     * its due minute. A fired timer is removed before it is handed over, so the consumer may set a
+     * new timer for the same id.
+     *
+     * @param to The minute to advance to; the wheel never moves backwards.
+     * @param fired Receives each timer that fires.
+     */
+    void advance(long to, Consumer<Timer> fired) {
+        fireAll(OVERDUE, fired);
+        while (now < to) {
+            int lowest = lowestBusyLevel();
+            if (lowest != 0) {
+                if (lowest < 0 && overflow == null) {
+                    now = to; // No timers at all
+                    break;
+                }
+                // Nothing can fire before the next slot boundary of the lowest level holding timers
+                int bits = (lowest < 0 ? LEVELS : lowest) * SLOT_BITS;
+                long boundary = ((now >> bits) + 1) << bits;
+                if (boundary > to) {
+                    now = to;
+                    break;
+                }
+                now = boundary - 1;
+            }
+            now++;
+            cascade();
+            fireAll(slotIndex(0, now), fired);
+        }
+    }
+
+    /**
+     * Moves the timers of the slots the wheel just reached on the higher levels down to where they
+     * now belong, highest level first.
+     */
+    private void cascade() {
+        if ((now & ((1L << (LEVELS * SLOT_BITS)) - 1)) == 0) {
+            Timer timer = overflow;
+            overflow = null;
+            placeAll(timer);
+        }
+        for (int level = LEVELS - 1; level > 0; level--) {
+            int span = level * SLOT_BITS;
+            if ((now & ((1L << span) - 1)) == 0) {
+                int slot = slotIndex(level, now);
+                Timer timer = slots[slot];
+                slots[slot] = null;
+                levelSizes[level] -= count(timer);
+                placeAll(timer);
+            }
+        }
+    }
+
+    private void placeAll(Timer timer) {
+        while (timer != null) {
+            Timer next = timer.next;
+            place(timer);
+            timer = next;
+        }
+    }
+
+    private void fireAll(int slot, Consumer<Timer> fired) {
+        Timer timer;
+        while ((timer = head(slot)) != null) {
+            timers.remove(timer.id);
+            unlink(timer);
+            fired.accept(timer);
+        }
+    }
+
+    /**
+     * Links a timer that is not yet due, or due in the current minute while cascading, into the slot
+     * for its due minute.
+     */
+    private void place(Timer timer) {
+        timer.prev = null;
+        timer.next = null;
+        // The level is that of the highest base-64 digit in which the due minute differs from now
+        long differing = timer.minute ^ now;
+        int level = differing == 0 ? 0 : (63 - Long.numberOfLeadingZeros(differing)) / SLOT_BITS;
+        if (level >= LEVELS) {
+            link(timer, OVERFLOW);
+            return;
+        }
+        link(timer, slotIndex(level, timer.minute));
+        levelSizes[level]++;
+    }
+
+    private void link(Timer timer, int slot) {
+        timer.slot = slot;
+        Timer head = head(slot);
+        timer.next = head;
+        if (head != null) {
+            head.prev = timer;
+        }
+        setHead(slot, timer);
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            setHead(timer.slot, timer.next);
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        if (timer.slot >= 0) {
+            levelSizes[timer.slot / SLOTS]--;
+        }
+        timer.prev = null;
+        timer.next = null;
+    }
+
+    private Timer head(int slot) {
+        switch (slot) {
+        case OVERDUE:
+            return overdue;
+        case OVERFLOW:
+            return overflow;
+        default:
+            return slots[slot];
+        }
+    }
+
+    private void setHead(int slot, Timer timer) {
+        switch (slot) {
+        case OVERDUE:
+            overdue = timer;
+            break;
+        case OVERFLOW:
+            overflow = timer;
+            break;
+        default:
+            slots[slot] = timer;
+            break;
+        }
+    }
+
+    private int lowestBusyLevel() {
+        for (int level = 0; level < LEVELS; level++) {
+            if (levelSizes[level] > 0) {
+                return level;
+            }
+        }
+        return -1;
+    }
+
+    private static int slotIndex(int level, long minute) {
+        return level * SLOTS + (int) ((minute >> (level * SLOT_BITS)) & (SLOTS - 1));
+    }
+
+    private static int count(Timer timer) {
+        int n = 0;
+        for (; timer != null; timer = timer.next) {
+            n++;
+        }
+        return n;
+    }
+}
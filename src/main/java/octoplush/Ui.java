@@ -2,22 +2,89 @@ package octoplush;
 
 import octoplush.task.Task;
 
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.List;
 import java.util.Scanner;
 
 /**
  * Handles user interaction through the command line interface.
+ * Output is rendered into a reusable buffer and written to the console in large chunks:
+ * once per command by {@link #flush()}, or sooner when a long listing fills the buffer.
  */
 public class Ui {
     private static final String SEP = "    ____________________________________________________________";
     private static final String IND = "     ";
+    private static final String NEWLINE = System.lineSeparator();
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHANGES_SHOWN = 10;
+    private static final String NOTHING_SELECTED = "No tasks matched, so nothing was changed.";
     private final Scanner scanner;
+    private final PrintStream out;
+    private final StringBuilder buffer = new StringBuilder(CHUNK_SIZE + 1024);
 
     /**
      * Creates a new Ui instance for handling user interaction.
      */
     public Ui() {
-        this.scanner = new Scanner(System.in);
+        this(System.in, System.out);
+    }
+
+    /**
+     * Creates a Ui that reads commands from and writes output to the given streams,
+     * e.g. for a client connected to a {@link Server}.
+     *
+     * @param in The stream to read commands from.
+     * @param out The stream to write output to.
+     */
+    public Ui(InputStream in, PrintStream out) {
+        this.scanner = new Scanner(in);
+        this.out = out;
+    }
+
+    private void println(String line) {
+        buffer.append(line).append(NEWLINE);
+        flushIfFull();
+    }
+
+    private void flushIfFull() {
+        if (buffer.length() >= CHUNK_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all buffered output to the console.
+     */
+    public void flush() {
+        synchronized (out) {
+            if (buffer.length() > 0) {
+                out.print(buffer);
+                buffer.setLength(0);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Displays a reminder that a deadline is nearly due or an event is about to start.
+     * Reminders arrive from another thread, so this writes to the console straight away and in one
+     * piece instead of going through the buffer.
+     *
+     * @param task The deadline or event.
+     */
+    public void showReminder(Task task) {
+        String reminder = SEP + NEWLINE + IND + "Reminder! This is coming up soon:" + NEWLINE
+                + IND + "  " + task + NEWLINE + SEP + NEWLINE;
+        synchronized (out) {
+            out.print(reminder);
+            out.flush();
+        }
+    }
+
+    private void printTask(int number, Task task) {
+        buffer.append(IND).append(number).append('.').append(task).append(NEWLINE);
+        flushIfFull();
     }
 
     /**
@@ -25,8 +92,8 @@ public class Ui {
      */
     public void showWelcome() {
         showLine();
-        System.out.println(IND + "Hello! I'm Octoplush");
-        System.out.println(IND + "What can I do for you?");
+        println(IND + "Hello! I'm Octoplush");
+        println(IND + "What can I do for you?");
         showLine();
     }
 
@@ -34,7 +101,7 @@ public class Ui {
      * Displays a separator line.
      */
     public void showLine() {
-        System.out.println(SEP);
+        println(SEP);
     }
 
     /**
@@ -43,7 +110,7 @@ public class Ui {
      * @param message The error message to display.
      */
     public void showError(String message) {
-        System.out.println(IND + message);
+        println(IND + message);
     }
 
     /**
@@ -54,17 +121,35 @@ public class Ui {
     }
 
     /**
-     * Reads a command from the user.
+     * Displays a warning when tasks could only be loaded in part from file.
+     *
+     * @param isFromBackup Whether the task file was damaged and a backup was loaded instead.
+     */
+    public void showRecoveryWarning(boolean isFromBackup) {
+        if (isFromBackup) {
+            showError("Your task file was damaged, so your tasks were recovered from a backup. "
+                    + "Recent changes may be missing; the damaged files were kept with names ending in .damaged.");
+        } else {
+            showError("Some recent changes could not be read back and were left out. "
+                    + "They were kept in a file with a name ending in .journal.damaged.");
+        }
+    }
+
+    /**
+     * Reads a command from the user. Once the input has run out, this returns {@code bye}.
      *
      * @return The user's input command.
      */
     public String readCommand() {
-        String line = scanner.nextLine().trim();
-        if (line.isEmpty()) {
-            System.out.println(IND);
-            return readCommand(); // Recursive call to get next input
+        flush();
+        while (scanner.hasNextLine()) {
+            String line = scanner.nextLine().trim();
+            if (!line.isEmpty()) {
+                return line;
+            }
+            println(IND);
         }
-        return line;
+        return "bye";
     }
 
     /**
@@ -74,9 +159,9 @@ public class Ui {
      * @param totalTasks The total number of tasks in the list.
      */
     public void showTaskAdded(Task task, int totalTasks) {
-        System.out.println(IND + "Got it. I've added this task:");
-        System.out.println(IND + "  " + task);
-        System.out.println(IND + "Now you have " + totalTasks + " tasks in the list.");
+        println(IND + "Got it. I've added this task as #" + task.getId() + ":");
+        println(IND + "  " + task);
+        println(IND + "Now you have " + totalTasks + " tasks in the list.");
     }
 
     /**
@@ -86,9 +171,9 @@ public class Ui {
      * @param totalTasks The total number of tasks remaining in the list.
      */
     public void showTaskDeleted(Task task, int totalTasks) {
-        System.out.println(IND + "Noted. I've removed this task:");
-        System.out.println(IND + "  " + task);
-        System.out.println(IND + "Now you have " + totalTasks + " items in the list.");
+        println(IND + "Noted. I've removed this task:");
+        println(IND + "  " + task);
+        println(IND + "Now you have " + totalTasks + " items in the list.");
     }
 
     /**
@@ -97,8 +182,8 @@ public class Ui {
      * @param task The task that was marked.
      */
     public void showTaskMarked(Task task) {
-        System.out.println(IND + "Nice! I've marked this task as done:");
-        System.out.println(IND + "  " + task);
+        println(IND + "Nice! I've marked this task as done:");
+        println(IND + "  " + task);
     }
 
     /**
@@ -107,8 +192,92 @@ public class Ui {
      * @param task The task that was unmarked.
      */
     public void showTaskUnmarked(Task task) {
-        System.out.println(IND + "OK, I've marked this task as not done yet:");
-        System.out.println(IND + "  " + task);
+        println(IND + "OK, I've marked this task as not done yet:");
+        println(IND + "  " + task);
+    }
+
+    /**
+     * Displays a confirmation message when several tasks are marked as done.
+     *
+     * @param tasks The task list.
+     * @param indexes The 0-based indexes of the marked tasks.
+     */
+    public void showTasksMarked(TaskList tasks, int[] indexes) {
+        if (indexes.length == 0) {
+            println(IND + NOTHING_SELECTED);
+            return;
+        }
+        println(IND + "Nice! I've marked these " + indexes.length + " tasks as done:");
+        printTasks(tasks, indexes);
+    }
+
+    /**
+     * Displays a confirmation message when several tasks are marked as not done.
+     *
+     * @param tasks The task list.
+     * @param indexes The 0-based indexes of the unmarked tasks.
+     */
+    public void showTasksUnmarked(TaskList tasks, int[] indexes) {
+        if (indexes.length == 0) {
+            println(IND + NOTHING_SELECTED);
+            return;
+        }
+        println(IND + "OK, I've marked these " + indexes.length + " tasks as not done yet:");
+        printTasks(tasks, indexes);
+    }
+
+    /**
+     * Displays a confirmation message when several tasks are deleted.
+     *
+     * @param deletedTasks The tasks that were deleted.
+     * @param totalTasks The total number of tasks remaining in the list.
+     */
+    public void showTasksDeleted(List<Task> deletedTasks, int totalTasks) {
+        if (deletedTasks.isEmpty()) {
+            println(IND + NOTHING_SELECTED);
+            return;
+        }
+        println(IND + "Noted. I've removed these " + deletedTasks.size() + " tasks:");
+        int shown = Math.min(deletedTasks.size(), MAX_CHANGES_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            println(IND + "  " + deletedTasks.get(i));
+        }
+        printRemainder(deletedTasks.size() - shown);
+        println(IND + "Now you have " + totalTasks + " items in the list.");
+    }
+
+    /**
+     * Displays the tasks moved to the archive and the number left in the list.
+     *
+     * @param archivedTasks The archived tasks.
+     * @param totalTasks The number of tasks left in the list.
+     */
+    public void showTasksArchived(List<Task> archivedTasks, int totalTasks) {
+        if (archivedTasks.isEmpty()) {
+            println(IND + "No finished tasks are old enough to archive.");
+            return;
+        }
+        println(IND + "Noted. I've archived these " + archivedTasks.size() + " tasks:");
+        int shown = Math.min(archivedTasks.size(), MAX_CHANGES_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            println(IND + "  " + archivedTasks.get(i));
+        }
+        printRemainder(archivedTasks.size() - shown);
+        println(IND + "Now you have " + totalTasks + " items in the list.");
+    }
+
+    private void printTasks(TaskList tasks, int[] indexes) {
+        int shown = Math.min(indexes.length, MAX_CHANGES_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            printTask(indexes[i] + 1, tasks.get(indexes[i]));
+        }
+        printRemainder(indexes.length - shown);
+    }
+
+    private void printRemainder(int count) {
+        if (count > 0) {
+            println(IND + "  ...and " + count + " more.");
+        }
     }
 
     /**
@@ -117,43 +286,189 @@ public class Ui {
      * @param tasks The task list to display.
      */
     public void showTaskList(TaskList tasks) {
-        if (tasks.size() == 0) {
-            System.out.println(IND + "Your list is empty. Add tasks with: todo, deadline, or event.");
+        List<Task> all = tasks.getTasks(); // One snapshot, however the list changes meanwhile
+        if (all.isEmpty()) {
+            println(IND + "Your list is empty. Add tasks with: todo, deadline, or event.");
         } else {
-            System.out.println(IND + "Here are the tasks in your list:");
-            for (int i = 0; i < tasks.size(); i++) {
-                System.out.println(IND + (i + 1) + "." + tasks.get(i));
+            println(IND + "Here are the tasks in your list:");
+            for (int i = 0; i < all.size(); i++) {
+                printTask(i + 1, all.get(i));
+            }
+        }
+    }
+
+    /**
+     * Displays one page of the tasks in the list, numbered by their place in the whole list.
+     *
+     * @param tasks The task list to display.
+     * @param page The 1-based page number.
+     * @param pageSize The number of tasks on a page.
+     * @throws OctoplushException If the list has no such page.
+     */
+    public void showTaskPage(TaskList tasks, int page, int pageSize) {
+        List<Task> all = tasks.getTasks(); // One snapshot, however the list changes meanwhile
+        int pageCount = Math.max(1, (all.size() + pageSize - 1) / pageSize);
+        if (page > pageCount) {
+            throw new OctoplushException("There is no page " + page + ". Your list has " + pageCount
+                    + (pageCount == 1 ? " page." : " pages."));
+        }
+        if (all.isEmpty()) {
+            println(IND + "Your list is empty. Add tasks with: todo, deadline, or event.");
+            return;
+        }
+
+        int start = (page - 1) * pageSize;
+        int end = Math.min(start + pageSize, all.size());
+        println(IND + "Here are tasks " + (start + 1) + "-" + end + " of " + all.size()
+                + " in your list (page " + page + " of " + pageCount + "):");
+        for (int i = start; i < end; i++) {
+            printTask(i + 1, all.get(i));
+        }
+    }
+
+    /**
+     * Displays tasks that match a search, numbered by their position in the list.
+     *
+     * @param matchingTasks The matching tasks with their list numbers.
+     */
+    public void showFoundTasks(List<NumberedTask> matchingTasks) {
+        showFoundTasks(matchingTasks, List.of());
+    }
+
+    /**
+     * Displays the tasks in the list and in the archive that match a search.
+     * Archived tasks have no list number, so they are shown without one.
+     *
+     * @param matchingTasks The matching tasks in the list, with their list numbers.
+     * @param archivedTasks The matching archived tasks.
+     */
+    public void showFoundTasks(List<NumberedTask> matchingTasks, List<Task> archivedTasks) {
+        if (matchingTasks.isEmpty() && archivedTasks.isEmpty()) {
+            println(IND + "No matching tasks found.");
+            return;
+        }
+        if (!matchingTasks.isEmpty()) {
+            println(IND + "Here are the matching tasks in your list:");
+            for (NumberedTask found : matchingTasks) {
+                printTask(found.getNumber(), found.getTask());
+            }
+        }
+        if (!archivedTasks.isEmpty()) {
+            println(IND + "Here are the matching tasks in your archive:");
+            for (Task archived : archivedTasks) {
+                println(IND + "  " + archived);
             }
         }
     }
 
     /**
-     * Displays tasks that match a search keyword.
+     * Displays the tasks scheduled within a period.
      *
-     * @param matchingTasks The list of matching tasks to display.
+     * @param scheduledTasks The deadlines and events in the period, ordered by time.
      */
-    public void showFoundTasks(ArrayList<Task> matchingTasks) {
-        if (matchingTasks.isEmpty()) {
-            System.out.println(IND + "No matching tasks found.");
+    public void showScheduledTasks(List<Task> scheduledTasks) {
+        if (scheduledTasks.isEmpty()) {
+            println(IND + "Nothing is due or happening in that period.");
         } else {
-            System.out.println(IND + "Here are the matching tasks in your list:");
-            for (int i = 0; i < matchingTasks.size(); i++) {
-                System.out.println(IND + (i + 1) + "." + matchingTasks.get(i));
+            println(IND + "Here are the tasks in that period:");
+            for (int i = 0; i < scheduledTasks.size(); i++) {
+                printTask(i + 1, scheduledTasks.get(i));
             }
         }
     }
 
+    /**
+     * Displays a confirmation message when a batch is started.
+     */
+    public void showBatchStarted() {
+        println(IND + "OK, I'll hold on to your changes until you 'commit' them.");
+    }
+
+    /**
+     * Displays a confirmation message when a batch is saved.
+     *
+     * @param changeCount The number of changes saved.
+     */
+    public void showBatchCommitted(int changeCount) {
+        println(IND + "Saved " + changeCount + " changes.");
+    }
+
+    /**
+     * Displays a confirmation message when a batch is rolled back.
+     *
+     * @param changeCount The number of changes undone.
+     */
+    public void showBatchRolledBack(int changeCount) {
+        println(IND + "Undid " + changeCount + " unsaved changes.");
+    }
+
+    /**
+     * Displays the changes made to undo the last command.
+     *
+     * @param changes The changes made, in order.
+     */
+    public void showUndone(List<TaskChange> changes) {
+        println(IND + "OK, I've undone your last change:");
+        printChanges(changes);
+    }
+
+    /**
+     * Displays the changes made to redo the last undone command.
+     *
+     * @param changes The changes made, in order.
+     */
+    public void showRedone(List<TaskChange> changes) {
+        println(IND + "OK, I've redone it:");
+        printChanges(changes);
+    }
+
+    private void printChanges(List<TaskChange> changes) {
+        int shown = Math.min(changes.size(), MAX_CHANGES_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            TaskChange change = changes.get(i);
+            println(IND + "  " + describe(change.getKind()) + change.getTask());
+        }
+        printRemainder(changes.size() - shown);
+    }
+
+    private static String describe(TaskChange.Kind kind) {
+        switch (kind) {
+        case ADDED:
+            return "Put back: ";
+        case DELETED:
+            return "Removed: ";
+        case MARKED:
+            return "Marked as done: ";
+        default:
+            return "Marked as not done: ";
+        }
+    }
+
+    /**
+     * Displays how often each command has run and how long the steps of running it took.
+     *
+     * @param stats The figures recorded so far.
+     */
+    public void showStats(Stats stats) {
+        println(IND + "Here is where the time has gone so far:");
+        for (String line : stats.describe()) {
+            println(IND + line);
+        }
+        println(IND + "Commands that failed: " + stats.getErrorCount());
+    }
+
     /**
      * Displays the goodbye message when the user exits.
      */
     public void showGoodbye() {
-        System.out.println(IND + "Bye. Hope to see you again soon!");
+        println(IND + "Bye. Hope to see you again soon!");
     }
 
     /**
-     * Closes the scanner to release resources.
+     * Writes any buffered output and closes the scanner to release resources.
      */
     public void close() {
+        flush();
         scanner.close();
     }
 }
\ No newline at end of file
@@ -25,6 +25,6 @@ public class AddCommand extends Command {
     public void execute(TaskList tasks, Ui ui, Storage storage) throws OctoplushException {
         tasks.add(task);
         ui.showTaskAdded(task, tasks.size());
-        storage.save(tasks.getTasks());
+        storage.logAdd(tasks, task);
     }
 }
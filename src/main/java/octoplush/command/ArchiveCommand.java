@@ -0,0 +1,84 @@
+package octoplush.command;
+
+import octoplush.OctoplushException;
+import octoplush.Storage;
+import octoplush.TaskList;
+import octoplush.Ui;
+import octoplush.task.Deadline;
+import octoplush.task.Event;
+import octoplush.task.Task;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command to move finished tasks out of the task list into the archive, keeping the list small.
+ * A task is finished once it is done and, for a deadline or an event, its last occurrence is over;
+ * it is archived once it has been finished for a number of days. Archived tasks can still be found
+ * with {@code find /all}.
+ */
+public class ArchiveCommand extends Command {
+    private static final int DEFAULT_DAYS = 30;
+
+    private final int days;
+
+    /**
+     * Creates a command to archive the tasks finished more than {@value #DEFAULT_DAYS} days ago.
+     */
+    public ArchiveCommand() {
+        this(DEFAULT_DAYS);
+    }
+
+    /**
+     * Creates a command to archive the tasks finished more than the given number of days ago.
+     *
+     * @param days The number of days; 0 archives every finished task.
+     */
+    public ArchiveCommand(int days) {
+        this.days = days;
+    }
+
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws OctoplushException {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(days);
+        List<Task> all = tasks.getTasks();
+        ArrayList<Task> archived = new ArrayList<>();
+        int[] indexes = new int[all.size()];
+        for (int i = 0; i < all.size(); i++) {
+            Task task = all.get(i);
+            if (isFinishedBefore(task, cutoff)) {
+                indexes[archived.size()] = i;
+                archived.add(task);
+            }
+        }
+        if (archived.isEmpty()) {
+            ui.showTasksArchived(archived, tasks.size());
+            return;
+        }
+
+        storage.archive(archived); // Before deleting, so no task is ever in neither place
+        int[] deletedIds = new int[archived.size()];
+        for (int i = 0; i < deletedIds.length; i++) {
+            deletedIds[i] = archived.get(i).getId();
+        }
+        tasks.archiveAll(Arrays.copyOf(indexes, archived.size()));
+        ui.showTasksArchived(archived, tasks.size());
+        storage.logDeleteAll(tasks, deletedIds);
+    }
+
+    /**
+     * Checks whether a task is done and nothing of it happens at or after the given time.
+     * Todos have no time, so they only need to be done.
+     */
+    private static boolean isFinishedBefore(Task task, LocalDateTime cutoff) {
+        if (!task.isDone()) {
+            return false;
+        }
+        if (task instanceof Deadline d) {
+            return !d.occursBetween(cutoff, null);
+        }
+        return !(task instanceof Event e) || !e.occursBetween(cutoff, null);
+    }
+}
@@ -0,0 +1,17 @@
+package octoplush.command;
+
+import octoplush.OctoplushException;
+import octoplush.Storage;
+import octoplush.TaskList;
+import octoplush.Ui;
+
+/**
+ * Command to start a batch of changes that are saved together by a {@link CommitCommand}.
+ */
+public class BeginCommand extends Command {
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws OctoplushException {
+        storage.beginBatch(tasks);
+        ui.showBatchStarted();
+    }
+}
@@ -28,4 +28,13 @@ public abstract class Command {
     public boolean isExit() {
         return false;
     }
+
+    /**
+     * Checks if this command only reads the task list, so it can run alongside other commands.
+     *
+     * @return true if the command changes neither the task list nor the storage.
+     */
+    public boolean isReadOnly() {
+        return false;
+    }
 }
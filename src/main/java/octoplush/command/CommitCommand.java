@@ -0,0 +1,16 @@
+package octoplush.command;
+
+import octoplush.OctoplushException;
+import octoplush.Storage;
+import octoplush.TaskList;
+import octoplush.Ui;
+
+/**
+ * Command to save all changes made since a {@link BeginCommand} at once.
+ */
+public class CommitCommand extends Command {
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws OctoplushException {
+        ui.showBatchCommitted(storage.commitBatch(tasks));
+    }
+}
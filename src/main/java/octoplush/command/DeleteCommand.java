@@ -2,29 +2,55 @@ package octoplush.command;
 
 import octoplush.Storage;
 import octoplush.TaskList;
+import octoplush.TaskRef;
+import octoplush.TaskSelection;
 import octoplush.Ui;
 import octoplush.OctoplushException;
 import octoplush.task.Task;
 
+import java.util.List;
+
 /**
- * Command to delete a task from the task list.
+ * Command to delete one or more tasks from the task list.
  */
 public class DeleteCommand extends Command {
-    private final int index;
+    private final TaskSelection selection;
+
+    /**
+     * Creates a command to delete a task.
+     *
+     * @param task The task to delete.
+     */
+    public DeleteCommand(TaskRef task) {
+        this(new TaskSelection().task(task));
+    }
 
     /**
-     * Creates a command to delete a task at the specified index.
+     * Creates a command to delete several tasks at once, in one pass over the list and saved as a single change.
      *
-     * @param index The 0-based index of the task to delete.
+     * @param selection The tasks to delete.
      */
-    public DeleteCommand(int index) {
-        this.index = index;
+    public DeleteCommand(TaskSelection selection) {
+        this.selection = selection;
     }
 
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) throws OctoplushException {
-        Task deletedTask = tasks.delete(index);
-        ui.showTaskDeleted(deletedTask, tasks.size());
-        storage.save(tasks.getTasks());
+        int[] indexes = selection.resolve(tasks);
+        if (indexes.length == 1) {
+            Task deletedTask = tasks.delete(indexes[0]);
+            ui.showTaskDeleted(deletedTask, tasks.size());
+            storage.logDelete(tasks, deletedTask.getId());
+            return;
+        }
+        List<Task> deleted = tasks.deleteAll(indexes);
+        ui.showTasksDeleted(deleted, tasks.size());
+        if (!deleted.isEmpty()) {
+            int[] deletedIds = new int[deleted.size()];
+            for (int i = 0; i < deletedIds.length; i++) {
+                deletedIds[i] = deleted.get(i).getId();
+            }
+            storage.logDeleteAll(tasks, deletedIds);
+        }
     }
 }
@@ -0,0 +1,36 @@
+package octoplush.command;
+
+import octoplush.Storage;
+import octoplush.TaskList;
+import octoplush.Ui;
+
+import java.time.LocalDateTime;
+
+/**
+ * Command to list the deadlines due and the events taking place within a period.
+ */
+public class DueCommand extends Command {
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+
+    /**
+     * Creates a command to list the tasks scheduled within a period.
+     *
+     * @param from The start of the period, inclusive.
+     * @param to The end of the period, inclusive.
+     */
+    public DueCommand(LocalDateTime from, LocalDateTime to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) {
+        ui.showScheduledTasks(tasks.findBetween(from, to));
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
@@ -1,16 +1,25 @@
 package octoplush.command;
 
+import octoplush.OctoplushException;
 import octoplush.Storage;
 import octoplush.TaskList;
 import octoplush.Ui;
 
 /**
- * Command to exit the application.
+ * Command to exit the application, saving any open batch and queued changes first.
  */
 public class ExitCommand extends Command {
     @Override
-    public void execute(TaskList tasks, Ui ui, Storage storage) {
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws OctoplushException {
+        if (storage.isInBatch()) {
+            int changeCount = storage.commitBatch(tasks);
+            if (changeCount > 0) {
+                ui.showBatchCommitted(changeCount);
+            }
+        }
+        storage.flush();
         ui.showGoodbye();
+        storage.close();
     }
 
     @Override
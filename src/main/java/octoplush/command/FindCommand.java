@@ -1,17 +1,21 @@
 package octoplush.command;
 
+import octoplush.NumberedTask;
+import octoplush.OctoplushException;
 import octoplush.Storage;
 import octoplush.TaskList;
+import octoplush.TaskQuery;
 import octoplush.Ui;
-import octoplush.task.Task;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Command to find tasks containing a keyword.
+ * Command to find tasks containing a keyword or meeting other conditions, shown with their list numbers.
+ * See {@link TaskList#find(String)} for the keyword syntax. The archive can be searched as well.
  */
 public class FindCommand extends Command {
-    private final String keyword;
+    private final TaskQuery query;
+    private final boolean isArchiveSearched;
 
     /**
      * Creates a command to find tasks containing a keyword.
@@ -19,21 +23,41 @@ public class FindCommand extends Command {
      * @param keyword The keyword to search for.
      */
     public FindCommand(String keyword) {
-        this.keyword = keyword;
+        this(new TaskQuery().containing(keyword));
+    }
+
+    /**
+     * Creates a command to find the tasks meeting a query.
+     *
+     * @param query The conditions the tasks must meet.
+     */
+    public FindCommand(TaskQuery query) {
+        this(query, false);
+    }
+
+    /**
+     * Creates a command to find the tasks meeting a query, in the list and optionally in the archive.
+     *
+     * @param query The conditions the tasks must meet.
+     * @param isArchiveSearched Whether to search the archive too.
+     */
+    public FindCommand(TaskQuery query, boolean isArchiveSearched) {
+        this.query = query;
+        this.isArchiveSearched = isArchiveSearched;
     }
 
     @Override
-    public void execute(TaskList tasks, Ui ui, Storage storage) {
-        ArrayList<Task> matchingTasks = new ArrayList<>();
-        String lowerKeyword = keyword.toLowerCase();
-
-        for (int i = 0; i < tasks.size(); i++) {
-            Task task = tasks.get(i);
-            if (task.getDescription().toLowerCase().contains(lowerKeyword)) {
-                matchingTasks.add(task);
-            }
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws OctoplushException {
+        List<NumberedTask> found = tasks.query(query);
+        if (isArchiveSearched) {
+            ui.showFoundTasks(found, storage.findArchived(query, tasks));
+        } else {
+            ui.showFoundTasks(found);
         }
+    }
 
-        ui.showFoundTasks(matchingTasks);
+    @Override
+    public boolean isReadOnly() {
+        return true;
     }
 }
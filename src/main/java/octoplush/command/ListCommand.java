@@ -4,9 +4,42 @@ import octoplush.Storage;
 import octoplush.TaskList;
 import octoplush.Ui;
 
+/**
+ * Command to list all tasks, or one page of them.
+ */
 public class ListCommand extends Command {
+    private static final int PAGE_SIZE = 50;
+    private static final int ALL_PAGES = 0;
+
+    private final int page;
+
+    /**
+     * Creates a command to list all tasks.
+     */
+    public ListCommand() {
+        this(ALL_PAGES);
+    }
+
+    /**
+     * Creates a command to list one page of tasks.
+     *
+     * @param page The 1-based page number.
+     */
+    public ListCommand(int page) {
+        this.page = page;
+    }
+
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) {
-        ui.showTaskList(tasks);
+        if (page == ALL_PAGES) {
+            ui.showTaskList(tasks);
+        } else {
+            ui.showTaskPage(tasks, page, PAGE_SIZE);
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
     }
 }
@@ -2,28 +2,48 @@ package octoplush.command;
 
 import octoplush.Storage;
 import octoplush.TaskList;
+import octoplush.TaskRef;
+import octoplush.TaskSelection;
 import octoplush.Ui;
 import octoplush.OctoplushException;
 
 /**
- * Command to mark a task as done.
+ * Command to mark one or more tasks as done.
  */
 public class MarkCommand extends Command {
-    private final int index;
+    private final TaskSelection selection;
 
     /**
      * Creates a command to mark a task as done.
      *
-     * @param index The 0-based index of the task to mark.
+     * @param task The task to mark.
      */
-    public MarkCommand(int index) {
-        this.index = index;
+    public MarkCommand(TaskRef task) {
+        this(new TaskSelection().task(task));
+    }
+
+    /**
+     * Creates a command to mark several tasks as done at once, saved as a single change.
+     *
+     * @param selection The tasks to mark.
+     */
+    public MarkCommand(TaskSelection selection) {
+        this.selection = selection;
     }
 
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) throws OctoplushException {
-        tasks.markTask(index);
-        ui.showTaskMarked(tasks.get(index));
-        storage.save(tasks.getTasks());
+        int[] indexes = selection.resolve(tasks);
+        if (indexes.length == 1) {
+            tasks.markTask(indexes[0]);
+            ui.showTaskMarked(tasks.get(indexes[0]));
+            storage.logMark(tasks, indexes[0]);
+            return;
+        }
+        int[] changed = tasks.setDoneAll(indexes, true);
+        ui.showTasksMarked(tasks, indexes);
+        if (changed.length > 0) {
+            storage.logMarkAll(tasks, changed, true);
+        }
     }
 }
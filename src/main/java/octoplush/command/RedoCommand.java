@@ -0,0 +1,21 @@
+package octoplush.command;
+
+import octoplush.OctoplushException;
+import octoplush.Storage;
+import octoplush.TaskChange;
+import octoplush.TaskList;
+import octoplush.Ui;
+
+import java.util.List;
+
+/**
+ * Command to make the changes reverted by the last {@link UndoCommand} again.
+ */
+public class RedoCommand extends Command {
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws OctoplushException {
+        List<TaskChange> changes = tasks.redo();
+        ui.showRedone(changes);
+        storage.logChanges(tasks, changes);
+    }
+}
@@ -0,0 +1,19 @@
+package octoplush.command;
+
+import octoplush.OctoplushException;
+import octoplush.Storage;
+import octoplush.TaskList;
+import octoplush.Ui;
+
+/**
+ * Command to undo all changes made since a {@link BeginCommand} without saving them.
+ */
+public class RollbackCommand extends Command {
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws OctoplushException {
+        if (!storage.isInBatch()) {
+            throw new OctoplushException("There is no open batch to roll back. Use 'begin' to start one.");
+        }
+        ui.showBatchRolledBack(storage.rollbackBatch(tasks));
+    }
+}
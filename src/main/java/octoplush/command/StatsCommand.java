@@ -0,0 +1,20 @@
+package octoplush.command;
+
+import octoplush.Storage;
+import octoplush.TaskList;
+import octoplush.Ui;
+
+/**
+ * Command to show how many commands of each type have run and how long they and the saving took.
+ */
+public class StatsCommand extends Command {
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) {
+        ui.showStats(storage.getStats());
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+}
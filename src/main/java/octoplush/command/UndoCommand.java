@@ -0,0 +1,21 @@
+package octoplush.command;
+
+import octoplush.OctoplushException;
+import octoplush.Storage;
+import octoplush.TaskChange;
+import octoplush.TaskList;
+import octoplush.Ui;
+
+import java.util.List;
+
+/**
+ * Command to revert the changes made by the last command that changed the task list.
+ */
+public class UndoCommand extends Command {
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws OctoplushException {
+        List<TaskChange> changes = tasks.undo();
+        ui.showUndone(changes);
+        storage.logChanges(tasks, changes);
+    }
+}
@@ -2,28 +2,48 @@ package octoplush.command;
 
 import octoplush.Storage;
 import octoplush.TaskList;
+import octoplush.TaskRef;
+import octoplush.TaskSelection;
 import octoplush.Ui;
 import octoplush.OctoplushException;
 
 /**
- * Command to mark a task as not done.
+ * Command to mark one or more tasks as not done.
  */
 public class UnmarkCommand extends Command {
-    private final int index;
+    private final TaskSelection selection;
 
     /**
      * Creates a command to mark a task as not done.
      *
-     * @param index The 0-based index of the task to unmark.
+     * @param task The task to unmark.
      */
-    public UnmarkCommand(int index) {
-        this.index = index;
+    public UnmarkCommand(TaskRef task) {
+        this(new TaskSelection().task(task));
+    }
+
+    /**
+     * Creates a command to mark several tasks as not done at once, saved as a single change.
+     *
+     * @param selection The tasks to unmark.
+     */
+    public UnmarkCommand(TaskSelection selection) {
+        this.selection = selection;
     }
 
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) throws OctoplushException {
-        tasks.unmarkTask(index);
-        ui.showTaskUnmarked(tasks.get(index));
-        storage.save(tasks.getTasks());
+        int[] indexes = selection.resolve(tasks);
+        if (indexes.length == 1) {
+            tasks.unmarkTask(indexes[0]);
+            ui.showTaskUnmarked(tasks.get(indexes[0]));
+            storage.logUnmark(tasks, indexes[0]);
+            return;
+        }
+        int[] changed = tasks.setDoneAll(indexes, false);
+        ui.showTasksUnmarked(tasks, indexes);
+        if (changed.length > 0) {
+            storage.logMarkAll(tasks, changed, false);
+        }
     }
 }
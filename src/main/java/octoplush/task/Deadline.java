@@ -2,12 +2,15 @@ package octoplush.task;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Represents a task with a deadline.
+ * Represents a task with a deadline, which may repeat by a {@link Recurrence} rule.
  */
 public class Deadline extends Task {
     private final LocalDateTime by;
+    private final Recurrence recurrence;
     private static final DateTimeFormatter INPUT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm");
     private static final DateTimeFormatter OUTPUT_FORMAT = DateTimeFormatter.ofPattern("MMM dd yyyy, h:mma");
 
@@ -18,8 +21,20 @@ public class Deadline extends Task {
      * @param by The deadline for the task.
      */
     public Deadline(String description, LocalDateTime by) {
+        this(description, by, null);
+    }
+
+    /**
+     * Creates a new deadline task that repeats.
+     *
+     * @param description The description of the task.
+     * @param by The first deadline for the task.
+     * @param recurrence How the deadline repeats, or null if it does not.
+     */
+    public Deadline(String description, LocalDateTime by, Recurrence recurrence) {
         super(description);
         this.by = by;
+        this.recurrence = recurrence;
     }
 
     /**
@@ -40,6 +55,74 @@ public class Deadline extends Task {
         return by.format(INPUT_FORMAT);
     }
 
+    /**
+     * Gets the rule by which this deadline repeats.
+     *
+     * @return The rule, or null if the deadline does not repeat.
+     */
+    public Recurrence getRecurrence() {
+        return recurrence;
+    }
+
+    /**
+     * Checks whether this deadline, or any of its occurrences, is due within a period.
+     *
+     * @param from The start of the period, or null for no start.
+     * @param to The end of the period, or null for no end.
+     * @return true if the deadline is due within the period.
+     */
+    public boolean occursBetween(LocalDateTime from, LocalDateTime to) {
+        if (recurrence != null) {
+            return recurrence.occursBetween(by, 0, from, to);
+        }
+        return (from == null || !by.isBefore(from)) && (to == null || !by.isAfter(to));
+    }
+
+    /**
+     * Returns the occurrences of this deadline due within a period, generating only those.
+     * Each occurrence is a deadline that does not repeat, with the id and done flag of this one.
+     *
+     * @param from The start of the period, inclusive.
+     * @param to The end of the period, inclusive.
+     * @return The occurrences in order, or just this deadline if it does not repeat and is due in the period.
+     */
+    public List<Deadline> occurrencesBetween(LocalDateTime from, LocalDateTime to) {
+        ArrayList<Deadline> found = new ArrayList<>();
+        if (recurrence == null) {
+            if (occursBetween(from, to)) {
+                found.add(this);
+            }
+            return found;
+        }
+        for (LocalDateTime start : recurrence.startsBetween(by, 0, from, to)) {
+            found.add(occurrenceAt(start));
+        }
+        return found;
+    }
+
+    /**
+     * Returns the first occurrence of this deadline due at or after a time.
+     *
+     * @param time The time.
+     * @return The occurrence, which is this deadline if it does not repeat, or null if there is none.
+     */
+    public Deadline nextOccurrence(LocalDateTime time) {
+        if (recurrence == null) {
+            return by.isBefore(time) ? null : this;
+        }
+        LocalDateTime start = recurrence.firstStartFrom(by, time);
+        return start == null ? null : occurrenceAt(start);
+    }
+
+    private Deadline occurrenceAt(LocalDateTime start) {
+        Deadline occurrence = new Deadline(description, start);
+        occurrence.setId(getId());
+        if (done) {
+            occurrence.mark();
+        }
+        return occurrence;
+    }
+
     @Override
     public char tag() {
         return 'D';
@@ -47,6 +130,7 @@ public class Deadline extends Task {
 
     @Override
     protected String extra() {
-        return " (by: " + by.format(OUTPUT_FORMAT) + ")";
+        String repeats = recurrence == null ? "" : ", " + recurrence.describe();
+        return " (by: " + by.format(OUTPUT_FORMAT) + repeats + ")";
     }
 }
\ No newline at end of file
@@ -2,13 +2,18 @@ package octoplush.task;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents an event, which is a task that occurs during a specific time period.
+ * An event may repeat by a {@link Recurrence} rule, each occurrence lasting as long as the first.
  */
 public class Event extends Task {
     private final LocalDateTime from;
     private final LocalDateTime to;
+    private final Recurrence recurrence;
     private static final DateTimeFormatter INPUT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm");
     private static final DateTimeFormatter OUTPUT_FORMAT = DateTimeFormatter.ofPattern("MMM dd yyyy, h:mma");
 
@@ -20,9 +25,22 @@ public class Event extends Task {
      * @param to The end time of the event.
      */
     public Event(String description, LocalDateTime from, LocalDateTime to) {
+        this(description, from, to, null);
+    }
+
+    /**
+     * Creates a new event task that repeats.
+     *
+     * @param description The description of the event.
+     * @param from The start time of the first occurrence.
+     * @param to The end time of the first occurrence.
+     * @param recurrence How the event repeats, or null if it does not.
+     */
+    public Event(String description, LocalDateTime from, LocalDateTime to, Recurrence recurrence) {
         super(description);
         this.from = from;
         this.to = to;
+        this.recurrence = recurrence;
     }
 
     /**
@@ -61,6 +79,78 @@ public class Event extends Task {
         return to.format(INPUT_FORMAT);
     }
 
+    /**
+     * Gets the rule by which this event repeats.
+     *
+     * @return The rule, or null if the event does not repeat.
+     */
+    public Recurrence getRecurrence() {
+        return recurrence;
+    }
+
+    /**
+     * Checks whether this event, or any of its occurrences, takes place during a period.
+     *
+     * @param start The start of the period, or null for no start.
+     * @param end The end of the period, or null for no end.
+     * @return true if the event overlaps the period.
+     */
+    public boolean occursBetween(LocalDateTime start, LocalDateTime end) {
+        if (recurrence != null) {
+            return recurrence.occursBetween(from, lengthMinutes(), start, end);
+        }
+        return (start == null || !to.isBefore(start)) && (end == null || !from.isAfter(end));
+    }
+
+    /**
+     * Returns the occurrences of this event taking place during a period, generating only those.
+     * Each occurrence is an event that does not repeat, with the id and done flag of this one.
+     *
+     * @param start The start of the period, inclusive.
+     * @param end The end of the period, inclusive.
+     * @return The occurrences in order, or just this event if it does not repeat and overlaps the period.
+     */
+    public List<Event> occurrencesBetween(LocalDateTime start, LocalDateTime end) {
+        ArrayList<Event> found = new ArrayList<>();
+        if (recurrence == null) {
+            if (occursBetween(start, end)) {
+                found.add(this);
+            }
+            return found;
+        }
+        for (LocalDateTime occurrenceStart : recurrence.startsBetween(from, lengthMinutes(), start, end)) {
+            found.add(occurrenceAt(occurrenceStart));
+        }
+        return found;
+    }
+
+    /**
+     * Returns the first occurrence of this event starting at or after a time.
+     *
+     * @param time The time.
+     * @return The occurrence, which is this event if it does not repeat, or null if there is none.
+     */
+    public Event nextOccurrence(LocalDateTime time) {
+        if (recurrence == null) {
+            return from.isBefore(time) ? null : this;
+        }
+        LocalDateTime start = recurrence.firstStartFrom(from, time);
+        return start == null ? null : occurrenceAt(start);
+    }
+
+    private Event occurrenceAt(LocalDateTime start) {
+        Event occurrence = new Event(description, start, start.plusMinutes(lengthMinutes()));
+        occurrence.setId(getId());
+        if (done) {
+            occurrence.mark();
+        }
+        return occurrence;
+    }
+
+    private long lengthMinutes() {
+        return from.until(to, ChronoUnit.MINUTES);
+    }
+
     @Override
     public char tag() {
         return 'E';
@@ -68,6 +158,7 @@ public class Event extends Task {
 
     @Override
     protected String extra() {
-        return " (from: " + from.format(OUTPUT_FORMAT) + " to: " + to.format(OUTPUT_FORMAT) + ")";
+        String repeats = recurrence == null ? "" : ", " + recurrence.describe();
+        return " (from: " + from.format(OUTPUT_FORMAT) + " to: " + to.format(OUTPUT_FORMAT) + repeats + ")";
     }
 }
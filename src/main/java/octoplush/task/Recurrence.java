@@ -0,0 +1,183 @@
+package octoplush.task;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rule for repeating a deadline or an event: every day, week or month from its first occurrence,
+ * optionally until an end time. Only the rule is stored; occurrences are worked out from it when a
+ * period is asked for, so a task that repeats for years costs no more than one that does not.
+ */
+public class Recurrence {
+    /**
+     * How often a task repeats.
+     */
+    public enum Frequency {
+        DAILY, WEEKLY, MONTHLY
+    }
+
+    private static final DateTimeFormatter INPUT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm");
+    private static final DateTimeFormatter OUTPUT_FORMAT = DateTimeFormatter.ofPattern("MMM dd yyyy, h:mma");
+
+    private final Frequency frequency;
+    private final LocalDateTime until;
+
+    /**
+     * Creates a rule.
+     *
+     * @param frequency How often the task repeats.
+     * @param until The latest time an occurrence may start, or null to repeat forever.
+     */
+    public Recurrence(Frequency frequency, LocalDateTime until) {
+        this.frequency = frequency;
+        this.until = until;
+    }
+
+    /**
+     * Parses a rule in the form written by {@link #getRuleString()}.
+     *
+     * @param rule The rule, such as {@code weekly} or {@code monthly until 2026-12-31 2359}.
+     * @return The rule.
+     * @throws IllegalArgumentException If the rule is malformed.
+     */
+    public static Recurrence parseRule(String rule) {
+        String[] words = rule.trim().split(" ", 3);
+        Frequency frequency = Frequency.valueOf(words[0].toUpperCase());
+        if (words.length == 1) {
+            return new Recurrence(frequency, null);
+        }
+        if (words.length < 3 || !words[1].equals("until")) {
+            throw new IllegalArgumentException("Malformed repeat rule: " + rule);
+        }
+        return new Recurrence(frequency, LocalDateTime.parse(words[2], INPUT_FORMAT));
+    }
+
+    /**
+     * Gets how often the task repeats.
+     *
+     * @return The frequency.
+     */
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Gets the latest time an occurrence may start.
+     *
+     * @return The end of the rule, or null if it repeats forever.
+     */
+    public LocalDateTime getUntil() {
+        return until;
+    }
+
+    /**
+     * Gets the rule as a string for storage.
+     *
+     * @return The rule, with its end in yyyy-MM-dd HHmm format.
+     */
+    public String getRuleString() {
+        String rule = frequency.name().toLowerCase();
+        return until == null ? rule : rule + " until " + until.format(INPUT_FORMAT);
+    }
+
+    /**
+     * Returns the rule as shown to the user.
+     */
+    String describe() {
+        String rule = "repeats " + frequency.name().toLowerCase();
+        return until == null ? rule : rule + " until " + until.format(OUTPUT_FORMAT);
+    }
+
+    /**
+     * Checks whether an occurrence overlaps a period. Nothing is generated, however far apart the
+     * first occurrence and the period are.
+     *
+     * @param first The start of the first occurrence.
+     * @param lengthMinutes How long each occurrence lasts.
+     * @param from The start of the period, or null for no start.
+     * @param to The end of the period, or null for no end.
+     * @return true if some occurrence overlaps the period.
+     */
+    boolean occursBetween(LocalDateTime first, long lengthMinutes, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = nth(first, from == null ? 0 : firstEndingFrom(first, lengthMinutes, from));
+        return (until == null || !start.isAfter(until)) && (to == null || !start.isAfter(to));
+    }
+
+    /**
+     * Finds the first occurrence that starts at or after a time.
+     *
+     * @param first The start of the first occurrence.
+     * @param time The time.
+     * @return The start of the occurrence, or null if the rule ends before the time.
+     */
+    LocalDateTime firstStartFrom(LocalDateTime first, LocalDateTime time) {
+        LocalDateTime start = nth(first, firstEndingFrom(first, 0, time));
+        return until != null && start.isAfter(until) ? null : start;
+    }
+
+    /**
+     * Returns the starts of the occurrences that overlap a period, in order. Only the occurrences in the
+     * period are generated: the first one is found by counting whole days, weeks or months from the
+     * first occurrence.
+     *
+     * @param first The start of the first occurrence.
+     * @param lengthMinutes How long each occurrence lasts.
+     * @param from The start of the period, inclusive.
+     * @param to The end of the period, inclusive.
+     * @return The starts of the overlapping occurrences.
+     */
+    List<LocalDateTime> startsBetween(LocalDateTime first, long lengthMinutes, LocalDateTime from,
+            LocalDateTime to) {
+        ArrayList<LocalDateTime> starts = new ArrayList<>();
+        LocalDateTime last = until == null || until.isAfter(to) ? to : until;
+        for (long n = firstEndingFrom(first, lengthMinutes, from); ; n++) {
+            LocalDateTime start = nth(first, n);
+            if (start.isAfter(last)) {
+                return starts;
+            }
+            starts.add(start);
+        }
+    }
+
+    /**
+     * Finds the number of the first occurrence that has not ended before the given time.
+     */
+    private long firstEndingFrom(LocalDateTime first, long lengthMinutes, LocalDateTime from) {
+        LocalDateTime earliestStart = from.minusMinutes(lengthMinutes);
+        if (!earliestStart.isAfter(first)) {
+            return 0;
+        }
+        long n = unit().between(first, earliestStart);
+        // Months that are too short for the first occurrence's day shift the count by one either way
+        while (n > 0 && !nth(first, n - 1).isBefore(earliestStart)) {
+            n--;
+        }
+        while (nth(first, n).isBefore(earliestStart)) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the start of the occurrence with the given number, counting the first as 0. Months are
+     * counted from the first occurrence, so a task on the 31st falls on the last day of shorter months
+     * and goes back to the 31st after them.
+     */
+    private LocalDateTime nth(LocalDateTime first, long n) {
+        return first.plus(n, unit());
+    }
+
+    private ChronoUnit unit() {
+        switch (frequency) {
+        case DAILY:
+            return ChronoUnit.DAYS;
+        case WEEKLY:
+            return ChronoUnit.WEEKS;
+        default:
+            return ChronoUnit.MONTHS;
+        }
+    }
+}
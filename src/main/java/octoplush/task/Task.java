@@ -3,10 +3,17 @@ package octoplush.task;
 /**
  * Represents a task in the Octoplush application.
  * All specific task types inherit from this abstract class.
+ * The display string is built once, on first use, and its done box is patched when it no longer matches
+ * the done flag. Tasks may be marked on one thread while being read on others: the flag is volatile, and
+ * the string shown always agrees with the flag value read alongside it.
  */
 public abstract class Task {
+    private static final int DONE_BOX = 4; // Index of the X in "[T][X] "
+
     protected final String description;
-    protected boolean done;
+    protected volatile boolean done;
+    private int id;
+    private String rendered;
 
     /**
      * Creates a new task with the given description.
@@ -18,18 +25,36 @@ public abstract class Task {
         this.done = false;
     }
 
+    /**
+     * Gets the id of this task, which stays the same for as long as the task exists.
+     *
+     * @return The task id, or 0 if the task has not been added to a task list yet.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Sets the id of this task. Ids are assigned by the task list when the task is added.
+     *
+     * @param id The task id.
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
     /**
      * Marks this task as done.
      */
     public void mark() {
-        this.done = true;
+        done = true;
     }
 
     /**
      * Marks this task as not done.
      */
     public void unmark() {
-        this.done = false;
+        done = false;
     }
 
     /**
@@ -60,6 +85,7 @@ public abstract class Task {
     /**
      * Returns extra information to display for this task type.
      * Subclasses can override this to provide additional details (e.g., deadline time).
+     * The result is cached with the display string, so it must only depend on fields that never change.
      *
      * @return Extra information string, or empty string if none.
      */
@@ -69,6 +95,15 @@ public abstract class Task {
 
     @Override
     public String toString() {
-        return "[" + tag() + "][" + (done ? "X" : " ") + "] " + description + extra();
+        String cached = rendered;
+        boolean isDone = done;
+        if (cached == null) {
+            cached = "[" + tag() + "][" + (isDone ? "X" : " ") + "] " + description + extra();
+            rendered = cached;
+        } else if ((cached.charAt(DONE_BOX) == 'X') != isDone) {
+            cached = cached.substring(0, DONE_BOX) + (isDone ? 'X' : ' ') + cached.substring(DONE_BOX + 1);
+            rendered = cached;
+        }
+        return cached;
     }
 }
@@ -12,11 +12,8 @@ then
     rm ACTUAL.TXT
 fi
 
-# delete data file from previous run
-if [ -e "./data/octoplush.txt" ]
-then
-    rm ./data/octoplush.txt
-fi
+# delete data file, journal and backups from previous run
+rm -f ./data/octoplush.txt*
 
 # compile the code into the bin folder, terminates if error occurred
 if ! javac -cp ../src/main/java -Xlint:none -d ../bin ../src/main/java/octoplush/*.java ../src/main/java/octoplush/command/*.java ../src/main/java/octoplush/task/*.java
@@ -26,7 +23,8 @@ then
 fi
 
 # run the program, feed commands from input.txt file and redirect the output to the ACTUAL.TXT
-java -classpath ../bin octoplush.Octoplush < input.txt > ACTUAL.TXT
+# pin the locale so dates print as in EXPECTED.TXT (e.g. "6:00pm")
+java -Duser.language=en -Duser.country=GB -classpath ../bin octoplush.Octoplush < input.txt > ACTUAL.TXT
 
 # compare the output to the expected output
 diff ACTUAL.TXT EXPECTED.TXT